@@ -64,6 +64,16 @@ public interface Constants {
     static String JDOCONFIG_RESOURCE_NAME
         = "META-INF/jdoconfig.xml";
 
+    /**
+     * The suffix appended to the name of a JDO configuration resource to
+     * find its precompiled form, as written by {@link JDOConfigCompiler}.
+     * Constant value is <code>.properties</code>.
+     *
+     * @since 3.2
+     */
+    static String JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX
+        = ".properties";
+
     /**
      * The standard JDO configuration schema namespace.
      * Constant value is <code>http://xmlns.jcp.org/xml/ns/jdo/jdoconfig</code>.
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo;
+
+import java.util.Map;
+
+/**
+ * Timing of the phases of {@link JDOHelper#getPersistenceManagerFactory}.
+ * If the JDK Flight Recorder API <code>jdk.jfr</code> is available, each
+ * phase is reported as an event of type <code>javax.jdo.Bootstrap</code>
+ * carrying the phase, the factory name and the class loader; the duration
+ * is the duration of the event. When that event type is not being
+ * recorded, or the API is not available, a phase costs a single check.
+ * <P>Usage:
+ * <pre>
+ * Object event = JDOBootstrapEvents.begin();
+ * try {
+ *     ...
+ * } finally {
+ *     JDOBootstrapEvents.end(event, JDOBootstrapEvents.PHASE_..., name, loader);
+ * }
+ * </pre>
+ * @since 3.2
+ */
+final class JDOBootstrapEvents {
+
+    /** Finding configuration and service resources. */
+    static final String PHASE_RESOURCE_ENUMERATION = "ResourceEnumeration"; //NOI18N
+
+    /** Reading configuration resources. */
+    static final String PHASE_CONFIG_PARSE = "ConfigParse"; //NOI18N
+
+    /** Checking the standard property names. */
+    static final String PHASE_PROPERTY_VALIDATION = "PropertyValidation"; //NOI18N
+
+    /** Loading the implementation class and resolving its factory method. */
+    static final String PHASE_CLASS_LOADING = "ClassLoading"; //NOI18N
+
+    /** Running the factory method of the implementation. */
+    static final String PHASE_FACTORY_METHOD = "FactoryMethod"; //NOI18N
+
+    /** Records the events; null if the JFR API is not available. */
+    private static final Recorder recorder = createRecorder();
+
+    private JDOBootstrapEvents() {
+    }
+
+    /**
+     * Records events of one kind. The implementation using the JFR API is
+     * loaded by name only, so that this class works without that API.
+     */
+    interface Recorder {
+        /**
+         * Begin timing a phase, if events are recorded.
+         * @return the started event, or null if events are not recorded
+         */
+        Object begin();
+
+        /**
+         * Complete a phase begun by {@link #begin()}.
+         * @param event the started event
+         * @param phase the phase
+         * @param name the factory name, or null if not known
+         * @param loader the class loader used in the phase, or null
+         */
+        void end(Object event, String phase, String name, ClassLoader loader);
+    }
+
+    /**
+     * Create the JFR recorder if the JFR API is available.
+     * @return the recorder or null
+     */
+    private static Recorder createRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event"); //NOI18N
+            return (Recorder) Class.forName(
+                "javax.jdo.JDOBootstrapEvent$JFRRecorder") //NOI18N
+                .getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            // JFR is not available or cannot be used
+            return null;
+        }
+    }
+
+    /**
+     * Begin timing a phase.
+     * @return the started event, or null if events are not recorded
+     */
+    static Object begin() {
+        return recorder == null ? null : recorder.begin();
+    }
+
+    /**
+     * Complete a phase.
+     * @param event the result of {@link #begin()}
+     * @param phase the phase
+     * @param name the factory name, or null if not known
+     * @param loader the class loader used in the phase, or null
+     */
+    static void end(Object event, String phase, String name,
+            ClassLoader loader) {
+        if (event != null) {
+            recorder.end(event, phase, name, loader);
+        }
+    }
+
+    /**
+     * Complete a phase, taking the factory name from the PMF properties.
+     * @param event the result of {@link #begin()}
+     * @param phase the phase
+     * @param props the properties of the factory
+     * @param loader the class loader used in the phase, or null
+     */
+    static void end(Object event, String phase, Map<?, ?> props,
+            ClassLoader loader) {
+        if (event != null) {
+            recorder.end(event, phase, getName(props), loader);
+        }
+    }
+
+    /**
+     * Get the name a factory is known by from its properties.
+     * @param props the properties of the factory
+     * @return the name, or null if not known
+     */
+    private static String getName(Map<?, ?> props) {
+        if (props == null) {
+            return null;
+        }
+        Object name = props.get(Constants.PROPERTY_NAME);
+        if (name == null) {
+            name = props.get(Constants.PROPERTY_SPI_RESOURCE_NAME);
+        }
+        if (name == null) {
+            name = props.get(Constants.PROPERTY_PERSISTENCE_UNIT_NAME);
+        }
+        return name == null ? null : name.toString();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static javax.jdo.Constants.JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX;
+
+import javax.jdo.spi.I18NHelper;
+
+/**
+ * Main class to precompile a JDO configuration file at build time.
+ * The compiler is invoked with the following command line:
+ * <pre>
+ * java -cp {classpath} javax.jdo.JDOConfigCompiler {jdoconfig.xml} [{output file}]
+ * </pre>
+ * The output file defaults to the name of the configuration file with
+ * {@link Constants#JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX} appended, which
+ * is where {@link JDOHelper} looks for it: when a precompiled file is
+ * found next to a <code>META-INF/jdoconfig.xml</code> resource and was
+ * compiled from the current content of that resource, its properties are
+ * used and the XML is not parsed.
+ * <P>The precompiled file is a properties file holding the SHA-256 digest
+ * of the configuration file it was compiled from under the key
+ * <code>source.sha256</code> and, for the i-th
+ * persistence-manager-factory element, the key <code>pmf.{i}.name</code>
+ * with the trimmed name (empty for the anonymous PMF) and the keys
+ * <code>pmf.{i}.property.{property}</code> with the merged properties.
+ * The checks for duplicate names and properties that
+ * {@link JDOHelper} applies to a requested PMF are applied to all of
+ * them when compiling.
+ * <P>Whether the precompiled form is current is decided by the digest of
+ * the content of the configuration file, so any change is noticed, while
+ * a copy of the file with another modification time, for instance in a
+ * jar file, still uses the precompiled form. Computing the digest is
+ * much cheaper than parsing the XML.
+ *
+ * @since 3.2
+ */
+public class JDOConfigCompiler {
+
+    /** The Internationalization message helper. */
+    private final static I18NHelper msg =
+        I18NHelper.getInstance ("javax.jdo.Bundle"); //NOI18N
+
+    /** The key of the format version. */
+    static final String FORMAT_KEY = "format"; //NOI18N
+
+    /** The supported format version. */
+    static final String FORMAT_VERSION = "2"; //NOI18N
+
+    /** The key of the digest of the configuration file. */
+    static final String SOURCE_DIGEST_KEY = "source.sha256"; //NOI18N
+
+    /** The algorithm of the digest of the configuration file. */
+    private static final String DIGEST_ALGORITHM = "SHA-256"; //NOI18N
+
+    /** The prefix of the keys of a PMF. */
+    static final String PMF_PREFIX = "pmf."; //NOI18N
+
+    /** The suffix of the key of the name of a PMF. */
+    static final String NAME_SUFFIX = ".name"; //NOI18N
+
+    /** The infix of the keys of the properties of a PMF. */
+    static final String PROPERTY_INFIX = ".property."; //NOI18N
+
+    /** Run the compiler from the command line.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /** Run the compiler with the given command line arguments.
+     *
+     * @param args command line arguments
+     * @param out the stream to report success to
+     * @param err the stream to report errors to
+     * @return 0 on success, 1 if the arguments are invalid, or 2 if the
+     * configuration file cannot be compiled
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length < 1 || args.length > 2) {
+            err.println(msg.msg("MSG_JDOConfigCompilerUsage")); //NOI18N
+            return 1;
+        }
+        File config = new File(args[0]);
+        File output = new File(args.length == 2 ? args[1]
+            : args[0] + JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX);
+        try {
+            OutputStream stream = new FileOutputStream(output);
+            try {
+                compile(config.toURI().toURL(), stream);
+            } finally {
+                stream.close();
+            }
+        } catch (Exception ex) {
+            err.println(msg.msg("ERR_JDOConfigCompilerFailed", //NOI18N
+                config, ex));
+            return 2;
+        }
+        out.println(msg.msg("MSG_JDOConfigCompilerWrote", //NOI18N
+            output, config));
+        return 0;
+    }
+
+    /**
+     * Read the JDO configuration file at the given URL and write its
+     * precompiled form to the given stream.
+     * @param url URL of a JDO configuration file compliant with javax/jdo/jdoconfig.xsd.
+     * @param out the stream to write to; it is not closed
+     * @throws IOException if the precompiled form cannot be written
+     * @throws JDOFatalUserException if the configuration is invalid
+     */
+    public static void compile(URL url, OutputStream out) throws IOException {
+        // read once to learn the names, then again with all names
+        // requested to apply the checks for duplicates to all of them
+        Collection<String> names = JDOHelper.readNamedPMFPropertiesForNames(url,
+            Collections.<String>emptySet(),
+            JDOHelper.getDocumentBuilderFactory()).keySet();
+        Map<String, Map<Object, Object>> propertiesByName =
+            JDOHelper.readNamedPMFPropertiesForNames(url, names,
+                JDOHelper.getDocumentBuilderFactory());
+
+        // sort for reproducible output
+        Map<String, Map<Object, Object>> sorted =
+            new TreeMap<String, Map<Object, Object>>(propertiesByName);
+        Properties precompiled = new Properties();
+        precompiled.setProperty(FORMAT_KEY, FORMAT_VERSION);
+        precompiled.setProperty(SOURCE_DIGEST_KEY, digest(url));
+        int i = 0;
+        for (Map.Entry<String, Map<Object, Object>> pmf : sorted.entrySet()) {
+            String prefix = PMF_PREFIX + i++;
+            precompiled.setProperty(prefix + NAME_SUFFIX, pmf.getKey());
+            for (Map.Entry<Object, Object> property
+                    : pmf.getValue().entrySet()) {
+                precompiled.put(prefix + PROPERTY_INFIX + property.getKey(),
+                    property.getValue());
+            }
+        }
+        precompiled.store(out, url.toExternalForm());
+    }
+
+    /**
+     * Read the precompiled form of the JDO configuration file at the given
+     * URL, if there is one.
+     * @param url URL of the JDO configuration file
+     * @return the precompiled form, or null if there is none
+     */
+    static Properties readPrecompiled(URL url) {
+        try {
+            return load(getPrecompiledURL(url));
+        } catch (IOException ex) {
+            // no precompiled form
+            return null;
+        }
+    }
+
+    /**
+     * Get the properties of the requested PMFs from the precompiled form
+     * of the JDO configuration file at the given URL, if the precompiled
+     * form was compiled from the current content of the configuration
+     * file, as told by the recorded digest of its content. If the content
+     * cannot be read, the precompiled form is treated as stale.
+     * @param precompiled the precompiled form
+     * @param url URL of the JDO configuration file
+     * @param requestedPMFNames the trimmed names of the requested PMFs
+     * @return the properties of the requested PMFs found, keyed by name,
+     * or null if the precompiled form is not usable
+     */
+    static Map<String, Map<Object, Object>> getPrecompiledPMFProperties(
+            Properties precompiled, URL url,
+            Collection<String> requestedPMFNames) {
+        if (!FORMAT_VERSION.equals(precompiled.getProperty(FORMAT_KEY))) {
+            return null;
+        }
+        String expectedDigest = precompiled.getProperty(SOURCE_DIGEST_KEY);
+        try {
+            if (expectedDigest == null
+                    || !expectedDigest.equals(digest(url))) {
+                // compiled from another version of the configuration
+                return null;
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+
+        Map<String, Map<Object, Object>> propertiesByName =
+            new HashMap<String, Map<Object, Object>>();
+        for (int i = 0; ; ++i) {
+            String prefix = PMF_PREFIX + i;
+            String name = precompiled.getProperty(prefix + NAME_SUFFIX);
+            if (name == null) {
+                break;
+            }
+            if (requestedPMFNames.contains(name)) {
+                propertiesByName.put(name,
+                    getPMFProperties(precompiled, prefix + PROPERTY_INFIX));
+            }
+        }
+        return propertiesByName;
+    }
+
+    /**
+     * Compute the hexadecimal SHA-256 digest of the content at the URL.
+     * @param url the URL
+     * @return the digest
+     * @throws IOException if the content cannot be read
+     */
+    static String digest(final URL url) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-256
+            throw new IOException(ex);
+        }
+        InputStream in;
+        try {
+            in = AccessController.doPrivileged(
+                new PrivilegedExceptionAction<InputStream>() {
+                    public InputStream run() throws IOException {
+                        return url.openStream();
+                    }
+                }
+            );
+        } catch (PrivilegedActionException ex) {
+            throw (IOException)ex.getException();
+        }
+        try {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Get the properties with the given key prefix, without the prefix.
+     * @param precompiled the precompiled form
+     * @param prefix the key prefix
+     * @return the properties
+     */
+    private static Properties getPMFProperties(Properties precompiled,
+            String prefix) {
+        Properties props = new Properties();
+        for (String key : precompiled.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                props.setProperty(key.substring(prefix.length()),
+                    precompiled.getProperty(key));
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Get the URL of the precompiled form of a JDO configuration file,
+     * which is in the same directory.
+     * @param url URL of the JDO configuration file
+     * @return the URL of the precompiled form
+     * @throws IOException if the URL cannot be constructed
+     */
+    private static URL getPrecompiledURL(URL url) throws IOException {
+        String path = url.getPath();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        // resolve relative to the configuration so that the same protocol
+        // handler is used, e.g. for jar: URLs
+        return new URL(url, fileName + JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX);
+    }
+
+    /**
+     * Load the properties at the given URL in a doPrivileged block.
+     * @param url the URL
+     * @return the properties
+     * @throws IOException if the properties cannot be read
+     */
+    private static Properties load(final URL url) throws IOException {
+        try {
+            return AccessController.doPrivileged(
+                new PrivilegedExceptionAction<Properties>() {
+                    public Properties run() throws IOException {
+                        Properties props = new Properties();
+                        InputStream in = url.openStream();
+                        try {
+                            props.load(in);
+                        } finally {
+                            in.close();
+                        }
+                        return props;
+                    }
+                }
+            );
+        } catch (PrivilegedActionException ex) {
+            throw (IOException)ex.getException();
+        }
+    }
+}
@@ -29,8 +29,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -41,15 +46,24 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import javax.jdo.spi.I18NHelper;
 import javax.jdo.spi.JDOImplHelper;
 import javax.jdo.spi.JDOImplHelper.StateInterrogationBooleanReturn;
 import javax.jdo.spi.JDOImplHelper.StateInterrogationObjectReturn;
+import javax.jdo.spi.JDOSchemaHelper;
 import javax.jdo.spi.PersistenceCapable;
 import javax.jdo.spi.StateInterrogation;
 import javax.naming.Context;
@@ -60,6 +74,11 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -306,6 +325,16 @@ public class JDOHelper implements Constants {
             }
         };
 
+   /** The stateless instance used for handling non-binary-compatible
+    *  implementations of getStateFlags.
+    */
+    static StateInterrogationObjectReturn getStateFlags =
+        new StateInterrogationObjectReturn() {
+            public Object get(Object pc, StateInterrogation si) {
+                return si.getStateFlags(pc);
+            }
+        };
+
     /** Return the associated <code>PersistenceManager</code> if there is one.
      * Transactional and persistent instances return the associated
      * <code>PersistenceManager</code>.  
@@ -584,6 +613,37 @@ public class JDOHelper implements Constants {
         }
     }
 
+    /** Returns the lifecycle state of the parameter instance in a single
+     * call. The result is the bitwise or of
+     * {@link PersistenceCapable#STATE_PERSISTENT},
+     * {@link PersistenceCapable#STATE_TRANSACTIONAL},
+     * {@link PersistenceCapable#STATE_DIRTY},
+     * {@link PersistenceCapable#STATE_NEW},
+     * {@link PersistenceCapable#STATE_DELETED} and
+     * {@link PersistenceCapable#STATE_DETACHED} for each of the
+     * corresponding <code>isXXX</code> methods that would return true.
+     *
+     *<P>Instances of classes that do not implement 
+     * <code>PersistenceCapable</code> are interrogated once through the
+     * registered <code>StateInterrogation</code> instances, rather than
+     * once per state.
+     *<P>
+     * @see PersistenceCapable#jdoGetStateFlags()
+     * @param pc the instance.
+     * @return the state bits of the parameter instance, or 0 for 
+     * <code>null</code> and unrecognized instances.
+     * @since 3.2
+     */
+    public static int getStateFlags(Object pc) {
+      if (pc instanceof PersistenceCapable) {
+          return ((PersistenceCapable)pc).jdoGetStateFlags();
+        } else {
+            Integer flags = (Integer)
+                implHelper.nonBinaryCompatibleGet(pc, getStateFlags);
+            return (flags == null) ? 0 : flags.intValue();
+        }
+    }
+
     /** Accessor for the state of the passed object.
      * @param pc The object
      * @return The object state
@@ -593,9 +653,26 @@ public class JDOHelper implements Constants {
         if (pc == null) {
             return null;
         }
+        return OBJECT_STATES[getStateFlags(pc) & (OBJECT_STATES.length - 1)];
+    }
+
+    /** The object states indexed by the state bits of 
+     * {@link #getStateFlags(Object)}.
+     */
+    private static final ObjectState[] OBJECT_STATES = new ObjectState[64];
+    static {
+        for (int flags = 0; flags < OBJECT_STATES.length; ++flags) {
+            OBJECT_STATES[flags] = computeObjectState(flags);
+        }
+    }
 
-        if (isDetached(pc)) {
-            if (isDirty(pc)) {
+    /** Compute the object state from state bits.
+     * @param flags the state bits
+     * @return The object state
+     */
+    private static ObjectState computeObjectState(int flags) {
+        if ((flags & PersistenceCapable.STATE_DETACHED) != 0) {
+            if ((flags & PersistenceCapable.STATE_DIRTY) != 0) {
                 // Detached Dirty
                 return ObjectState.DETACHED_DIRTY;
             }
@@ -605,11 +682,11 @@ public class JDOHelper implements Constants {
             }
         }
         else {
-            if (isPersistent(pc)) {
-                if (isTransactional(pc)) {
-                    if (isDirty(pc)) {
-                        if (isNew(pc)) {
-                            if (isDeleted(pc)) {
+            if ((flags & PersistenceCapable.STATE_PERSISTENT) != 0) {
+                if ((flags & PersistenceCapable.STATE_TRANSACTIONAL) != 0) {
+                    if ((flags & PersistenceCapable.STATE_DIRTY) != 0) {
+                        if ((flags & PersistenceCapable.STATE_NEW) != 0) {
+                            if ((flags & PersistenceCapable.STATE_DELETED) != 0) {
                                 // Persistent Transactional Dirty New Deleted
                                 return ObjectState.PERSISTENT_NEW_DELETED;
                             } else {
@@ -617,7 +694,7 @@ public class JDOHelper implements Constants {
                                 return ObjectState.PERSISTENT_NEW;
                             }
                         } else {
-                            if (isDeleted(pc)) {
+                            if ((flags & PersistenceCapable.STATE_DELETED) != 0) {
                                 // Persistent Transactional Dirty Not New Deleted
                                 return ObjectState.PERSISTENT_DELETED;
                             } else {
@@ -631,7 +708,7 @@ public class JDOHelper implements Constants {
                     }
                 }
                 else {
-                    if (isDirty(pc)) {
+                    if ((flags & PersistenceCapable.STATE_DIRTY) != 0) {
                     // Persistent Nontransactional Dirty
                         return ObjectState.PERSISTENT_NONTRANSACTIONAL_DIRTY;
                     }
@@ -642,8 +719,8 @@ public class JDOHelper implements Constants {
                 }
             }
             else {
-                if (isTransactional(pc)) {
-                    if (isDirty(pc)) {
+                if ((flags & PersistenceCapable.STATE_TRANSACTIONAL) != 0) {
+                    if ((flags & PersistenceCapable.STATE_DIRTY) != 0) {
                         // Not Persistent Transactional Dirty
                         return ObjectState.TRANSIENT_DIRTY;                        
                     } else {
@@ -802,8 +879,15 @@ public class JDOHelper implements Constants {
             throw new JDOFatalUserException (msg.msg (
                 "EXC_GetPMFNullLoader")); //NOI18N
 
-        JDOImplHelper.assertOnlyKnownStandardProperties(overrides);
-        JDOImplHelper.assertOnlyKnownStandardProperties(props);
+        Object event = JDOBootstrapEvents.begin();
+        try {
+            JDOImplHelper.assertOnlyKnownStandardProperties(overrides);
+            JDOImplHelper.assertOnlyKnownStandardProperties(props);
+        } finally {
+            JDOBootstrapEvents.end(event,
+                JDOBootstrapEvents.PHASE_PROPERTY_VALIDATION,
+                props, pmfClassLoader);
+        }
         
         // first try to get the class name from the properties object.
         String pmfClassName = (String) props.get (
@@ -830,26 +914,36 @@ public class JDOHelper implements Constants {
              * resources and the invocation returns an instance.  
              * Otherwise add the exception thrown to 
              * an exception list.
+             * The class names found are remembered per class loader, and
+             * the implementation that returned a factory last time is
+             * tried first.
              */
-            Enumeration<URL> urls = null;
-            try {
-                urls = getResources(pmfClassLoader,
-                        SERVICE_LOOKUP_PMF_RESOURCE_NAME);
-            } catch (Throwable ex) {
-                exceptions.add(ex);
-            }
-
-            if (urls != null){
-                while (urls.hasMoreElements()) {
+            ServiceLookupEntry entry =
+                getServiceLookupEntry(pmfClassLoader, exceptions);
 
+            if (entry != null) {
+                String preferredClassName = entry.preferredClassName;
+                if (preferredClassName != null) {
+                    try {
+                        return invokeGetPersistenceManagerFactoryOnImplementation(
+                            preferredClassName, overrides, props, pmfClassLoader);
+                    } catch (Throwable ex) {
+                        // remember exceptions from failed pmf invocations
+                        exceptions.add(ex);
+                    }
+                }
+                for (String className : entry.pmfClassNames) {
+                    if (preferredClassName != null
+                            && preferredClassName.equals(className)) {
+                        // already tried
+                        continue;
+                    }
                     try {
-                        pmfClassName = getClassNameFromURL(
-                                (URL) urls.nextElement());
-
                         // return the implementation that is valid.
                         PersistenceManagerFactory pmf = 
                             invokeGetPersistenceManagerFactoryOnImplementation(
-                                pmfClassName, overrides, props, pmfClassLoader);
+                                className, overrides, props, pmfClassLoader);
+                        entry.preferredClassName = className;
                         return pmf;
 
                     } catch (Throwable ex) {
@@ -870,6 +964,107 @@ public class JDOHelper implements Constants {
                     exceptions.toArray(new Throwable[exceptions.size()]));
     }
 
+    /**
+     * The PMF class names found in the resources
+     * META-INF/services/javax.jdo.PersistenceManagerFactory, keyed weakly
+     * by the class loader used to find them.
+     * @since 3.2
+     */
+    private static final Map<ClassLoader, ServiceLookupEntry> serviceLookupCache =
+        new WeakHashMap<ClassLoader, ServiceLookupEntry>();
+
+    /**
+     * The PMF class names found via service lookup in one class loader.
+     * @since 3.2
+     */
+    private static class ServiceLookupEntry {
+        /** The class names in the order of the resources; an entry is
+         * null if the resource does not name a class.
+         */
+        final List<String> pmfClassNames = new ArrayList<String>();
+
+        /** The class name that last returned a factory, or null. */
+        volatile String preferredClassName;
+    }
+
+    /**
+     * Get the PMF class names found via service lookup in the class loader.
+     * The class names are read from the resources on first use only. If
+     * a resource cannot be read, the exception is added to the exception
+     * list, and the class names are not cached so that the resources are
+     * read again on the next call.
+     * @param pmfClassLoader the class loader used to find the resources
+     * @param exceptions the list to add exceptions to
+     * @return the class names found, or null if the resources cannot be found
+     */
+    private static ServiceLookupEntry getServiceLookupEntry(
+            ClassLoader pmfClassLoader, List<Throwable> exceptions) {
+        synchronized (serviceLookupCache) {
+            ServiceLookupEntry entry = serviceLookupCache.get(pmfClassLoader);
+            if (entry != null) {
+                return entry;
+            }
+        }
+
+        Object event = JDOBootstrapEvents.begin();
+        Enumeration<URL> urls = null;
+        try {
+            urls = getResources(pmfClassLoader,
+                    SERVICE_LOOKUP_PMF_RESOURCE_NAME);
+        } catch (Throwable ex) {
+            exceptions.add(ex);
+            JDOBootstrapEvents.end(event,
+                JDOBootstrapEvents.PHASE_RESOURCE_ENUMERATION,
+                (String) null, pmfClassLoader);
+            return null;
+        }
+
+        ServiceLookupEntry entry = new ServiceLookupEntry();
+        boolean cacheable = true;
+        while (urls != null && urls.hasMoreElements()) {
+            try {
+                entry.pmfClassNames.add(getClassNameFromURL(
+                        (URL) urls.nextElement()));
+            } catch (Throwable ex) {
+                exceptions.add(ex);
+                cacheable = false;
+            }
+        }
+        JDOBootstrapEvents.end(event,
+            JDOBootstrapEvents.PHASE_RESOURCE_ENUMERATION,
+            (String) null, pmfClassLoader);
+        if (cacheable) {
+            synchronized (serviceLookupCache) {
+                serviceLookupCache.put(pmfClassLoader, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Discard the PMF class names found via service lookup in all class
+     * loaders, so that the next lookup reads the resources
+     * META-INF/services/javax.jdo.PersistenceManagerFactory again.
+     * @since 3.2
+     */
+    public static void clearServiceLookupCache() {
+        synchronized (serviceLookupCache) {
+            serviceLookupCache.clear();
+        }
+    }
+
+    /**
+     * Discard the PMF class names found via service lookup in the given
+     * class loader.
+     * @param pmfClassLoader the class loader used to find the resources
+     * @since 3.2
+     */
+    public static void clearServiceLookupCache(ClassLoader pmfClassLoader) {
+        synchronized (serviceLookupCache) {
+            serviceLookupCache.remove(pmfClassLoader);
+        }
+    }
+
     /** Get a class name from a URL. The URL is from getResources with 
      * e.g. META-INF/services/javax.jdo.PersistenceManagerFactory as the
      * parameter. Parse the file, removing blank lines, comment lines,
@@ -1077,36 +1272,59 @@ public class JDOHelper implements Constants {
                 "EXC_GetPMFNullPropsLoader")); //NOI18N
         }
 
-        Map<Object,Object> props = null;
         // trim spaces from name and ensure non-null
         name = (name == null?ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME:name.trim());
+        Map<Object,Object> resourceProps = null;
         if (!ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME.equals(name)) {
-            props = loadPropertiesFromResource(resourceLoader, name);
+            resourceProps = loadPropertiesFromResource(resourceLoader, name);
+        }
+        Map<Object,Object> jdoconfigProps = null;
+        if (resourceProps == null) {
+            // props were null; try getting from jdoconfig.xml
+            jdoconfigProps = getPropertiesFromJdoconfig(name, resourceLoader);
         }
+        // we have loaded a Properties, delegate to implementation
+        return getPersistenceManagerFactory(overrides,
+            getNamedPMFBootstrapProperties(name, resourceProps, jdoconfigProps),
+            pmfLoader);
+    }
 
-        if (props != null) {
+    /**
+     * Return the properties to create the named PMF with, given the
+     * properties found in a resource with that name or else in a
+     * jdoconfig.xml element with that name. If neither was found, the name
+     * is taken as a JPA persistence unit name.
+     * @param name the trimmed name
+     * @param resourceProps the properties from the resource, or null
+     * @param jdoconfigProps the properties from jdoconfig.xml, or null
+     * @return the properties
+     * @throws JDOFatalUserException if nothing was found for the anonymous
+     * PMF
+     */
+    private static Map<Object,Object> getNamedPMFBootstrapProperties(
+            String name,
+            Map<Object,Object> resourceProps,
+            Map<Object,Object> jdoconfigProps) {
+        if (resourceProps != null) {
             // add the SPI property to inform the implementation that
             // the PMF was configured by the given resource name
             // and not via named PMF for proper deserialization
-            props.put(PROPERTY_SPI_RESOURCE_NAME, name);
-            props.remove(PROPERTY_NAME);
-            return getPersistenceManagerFactory(overrides, props, pmfLoader);
+            resourceProps.put(PROPERTY_SPI_RESOURCE_NAME, name);
+            resourceProps.remove(PROPERTY_NAME);
+            return resourceProps;
         }
-        // props were null; try getting from jdoconfig.xml
-        props = getPropertiesFromJdoconfig(name, resourceLoader);
-        if (props != null) {
+        if (jdoconfigProps != null) {
             // inform the impl that the config came from a jdoconfig.xml
             // element with the given name
-            props.put(PROPERTY_NAME, name);
-            props.remove(PROPERTY_SPI_RESOURCE_NAME);
-            // we have loaded a Properties, delegate to implementation
-            return getPersistenceManagerFactory(overrides, props, pmfLoader);
+            jdoconfigProps.put(PROPERTY_NAME, name);
+            jdoconfigProps.remove(PROPERTY_SPI_RESOURCE_NAME);
+            return jdoconfigProps;
         }
         // no properties found; last try to see if name is a JPA PU name
         if (!ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME.equals(name)) {
-            props = new Properties();
+            Map<Object,Object> props = new Properties();
             props.put(PROPERTY_PERSISTENCE_UNIT_NAME, name);
-            return getPersistenceManagerFactory(overrides, props, pmfLoader);
+            return props;
         }
         
         // no PMF found; give up
@@ -1114,11 +1332,484 @@ public class JDOHelper implements Constants {
             "EXC_NoPMFConfigurableViaPropertiesOrXML", name)); //NOI18N
     }
 
+    /**
+     * Returns a future of the {@link PersistenceManagerFactory} with the
+     * given name, created by the given executor. The resources are looked
+     * up with the context class loader of the calling thread, as for
+     * {@link #getPersistenceManagerFactory(String)}.
+     * @param name the name of the resource, PMF or persistence unit
+     * @param executor the executor to create the factory with
+     * @return the future factory
+     * @since 3.2
+     */
+    public static CompletableFuture<PersistenceManagerFactory>
+            getPersistenceManagerFactoryAsync(String name, Executor executor) {
+        ClassLoader cl = getContextClassLoader();
+        return getPersistenceManagerFactoryAsync(null, name, cl, cl, executor);
+    }
+
+    /**
+     * Returns a future of the {@link PersistenceManagerFactory} that
+     * {@link #getPersistenceManagerFactory(Map, String, ClassLoader, ClassLoader)}
+     * returns for the same arguments, created by the given executor.
+     * Failures complete the future exceptionally.
+     * @param overrides a Map containing properties that override properties
+     * defined in any resources loaded according to the "name" parameter
+     * @param name the name of the resource, PMF or persistence unit
+     * @param resourceLoader the class loader to use to load properties file
+     * resources
+     * @param pmfLoader the class loader to use to load the
+     * {@link PersistenceManagerFactory} classes
+     * @param executor the executor to create the factory with
+     * @return the future factory
+     * @since 3.2
+     */
+    public static CompletableFuture<PersistenceManagerFactory>
+            getPersistenceManagerFactoryAsync(
+                final Map<?, ?> overrides,
+                final String name,
+                final ClassLoader resourceLoader,
+                final ClassLoader pmfLoader,
+                Executor executor) {
+        return CompletableFuture.supplyAsync(
+            new Supplier<PersistenceManagerFactory>() {
+                public PersistenceManagerFactory get() {
+                    return getPersistenceManagerFactory(
+                        overrides, name, resourceLoader, pmfLoader);
+                }
+            }, executor);
+    }
+
+    /**
+     * Returns a future of the named {@link PersistenceManagerFactory}s,
+     * created in parallel by the given executor. The resources are looked
+     * up with the context class loader of the calling thread, as for
+     * {@link #getPersistenceManagerFactory(String)}.
+     * @param names the names of the resources, PMFs or persistence units
+     * @param executor the executor to create the factories with
+     * @return the future factories keyed by name
+     * @since 3.2
+     * @see #getPersistenceManagerFactories(Map, Collection, ClassLoader, ClassLoader, Executor)
+     */
+    public static CompletableFuture<Map<String, PersistenceManagerFactory>>
+            getPersistenceManagerFactories(
+                Collection<String> names, Executor executor) {
+        ClassLoader cl = getContextClassLoader();
+        return getPersistenceManagerFactories(null, names, cl, cl, executor);
+    }
+
+    /**
+     * Returns a future of the named {@link PersistenceManagerFactory}s,
+     * each configured as by
+     * {@link #getPersistenceManagerFactory(Map, String, ClassLoader, ClassLoader)}.
+     * The configuration is looked up by the calling thread, reading each
+     * jdoconfig.xml resource once for all names; the factories are then
+     * created in parallel by the given executor. The future completes
+     * exceptionally if the configuration cannot be read or any factory
+     * cannot be created; in the latter case the factories that were
+     * created are closed.
+     * @param overrides a Map containing properties that override properties
+     * defined in any resources loaded according to the names, or null
+     * @param names the names of the resources, PMFs or persistence units
+     * @param resourceLoader the class loader to use to load properties file
+     * resources
+     * @param pmfLoader the class loader to use to load the
+     * {@link PersistenceManagerFactory} classes
+     * @param executor the executor to create the factories with
+     * @return the future factories keyed by name, in the order of the names
+     * @since 3.2
+     */
+    public static CompletableFuture<Map<String, PersistenceManagerFactory>>
+            getPersistenceManagerFactories(
+                final Map<?, ?> overrides,
+                Collection<String> names,
+                ClassLoader resourceLoader,
+                final ClassLoader pmfLoader,
+                Executor executor) {
+        final Map<String, CompletableFuture<PersistenceManagerFactory>> futures =
+            new LinkedHashMap<String, CompletableFuture<PersistenceManagerFactory>>();
+        Map<String, Map<Object,Object>> propsByName =
+            new LinkedHashMap<String, Map<Object,Object>>();
+        try {
+            if (pmfLoader == null)
+                throw new JDOFatalUserException (msg.msg (
+                    "EXC_GetPMFNullPMFLoader")); //NOI18N
+            if (resourceLoader == null) {
+                throw new JDOFatalUserException(msg.msg(
+                    "EXC_GetPMFNullPropsLoader")); //NOI18N
+            }
+            // look up the properties of all names before creating anything
+            Map<String, Map<Object,Object>> resourcePropsByName =
+                new HashMap<String, Map<Object,Object>>();
+            List<String> jdoconfigNames = new ArrayList<String>();
+            for (String name : names) {
+                String trimmed = (name == null
+                    ? ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME : name.trim());
+                Map<Object,Object> resourceProps = null;
+                if (!ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME.equals(trimmed)) {
+                    resourceProps =
+                        loadPropertiesFromResource(resourceLoader, trimmed);
+                }
+                if (resourceProps != null) {
+                    resourcePropsByName.put(trimmed, resourceProps);
+                } else if (!jdoconfigNames.contains(trimmed)) {
+                    jdoconfigNames.add(trimmed);
+                }
+            }
+            Map<String, Map<Object,Object>> jdoconfigPropsByName =
+                jdoconfigNames.isEmpty()
+                    ? Collections.<String, Map<Object,Object>>emptyMap()
+                    : getNamedPMFPropertiesForNames(jdoconfigNames, resourceLoader,
+                        JDOCONFIG_RESOURCE_NAME);
+            // resolve the properties of all names before submitting any,
+            // so that a name without configuration creates nothing
+            for (String name : names) {
+                if (propsByName.containsKey(name)) {
+                    continue;
+                }
+                String trimmed = (name == null
+                    ? ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME : name.trim());
+                // each factory gets its own copy of the properties
+                propsByName.put(name, getNamedPMFBootstrapProperties(trimmed,
+                    copyOf(resourcePropsByName.get(trimmed)),
+                    copyOf(jdoconfigPropsByName.get(trimmed))));
+            }
+        } catch (RuntimeException ex) {
+            CompletableFuture<Map<String, PersistenceManagerFactory>> failed =
+                new CompletableFuture<Map<String, PersistenceManagerFactory>>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        for (Map.Entry<String, Map<Object,Object>> entry : propsByName.entrySet()) {
+            final Map<Object,Object> props = entry.getValue();
+            CompletableFuture<PersistenceManagerFactory> future;
+            try {
+                future = CompletableFuture.supplyAsync(
+                    new Supplier<PersistenceManagerFactory>() {
+                        public PersistenceManagerFactory get() {
+                            return getPersistenceManagerFactory(
+                                overrides, props, pmfLoader);
+                        }
+                    }, executor);
+            } catch (RuntimeException ex) {
+                // the executor rejected the task; fail the result once the
+                // submitted factories are created, so that they are closed
+                future = new CompletableFuture<PersistenceManagerFactory>();
+                future.completeExceptionally(ex);
+                futures.put(entry.getKey(), future);
+                break;
+            }
+            futures.put(entry.getKey(), future);
+        }
+
+        CompletableFuture<?>[] all = futures.values().toArray(
+            new CompletableFuture<?>[futures.size()]);
+        return CompletableFuture.allOf(all).handle(
+            new BiFunction<Void, Throwable, Map<String, PersistenceManagerFactory>>() {
+                public Map<String, PersistenceManagerFactory> apply(
+                        Void ignore, Throwable failure) {
+                    Map<String, PersistenceManagerFactory> pmfs =
+                        new LinkedHashMap<String, PersistenceManagerFactory>();
+                    for (Map.Entry<String, CompletableFuture<PersistenceManagerFactory>>
+                            entry : futures.entrySet()) {
+                        if (!entry.getValue().isCompletedExceptionally()) {
+                            pmfs.put(entry.getKey(), entry.getValue().join());
+                        }
+                    }
+                    if (failure == null) {
+                        return pmfs;
+                    }
+                    // do not leak the factories that were created
+                    for (PersistenceManagerFactory pmf : pmfs.values()) {
+                        try {
+                            pmf.close();
+                        } catch (RuntimeException ex) {
+                            // gulp; report the original failure
+                        }
+                    }
+                    throw (failure instanceof CompletionException)
+                        ? (CompletionException) failure
+                        : new CompletionException(failure);
+                }
+            });
+    }
+
+    /**
+     * Copy properties that may be shared between factories.
+     * @param props the properties, or null
+     * @return a copy, or null
+     */
+    private static Map<Object,Object> copyOf(Map<Object,Object> props) {
+        if (props == null) {
+            return null;
+        }
+        Properties copy = new Properties();
+        copy.putAll(props);
+        return copy;
+    }
+
+    /**
+     * Returns the live {@link PersistenceManagerFactory} previously created
+     * by this method for the given name and class loader, or creates and
+     * remembers a new one if there is none or the remembered one has been
+     * closed.
+     * This is equivalent to
+     * <code>getOrCreatePersistenceManagerFactory(null, name, loader)</code>.
+     * @param name the name of the resource, PMF or persistence unit, as for
+     * {@link #getPersistenceManagerFactory(Map, String, ClassLoader, ClassLoader)}
+     * @param loader the class loader to use to load both the resources and
+     * the implementation classes
+     * @return the shared PersistenceManagerFactory
+     * @since 3.2
+     */
+    public static PersistenceManagerFactory getOrCreatePersistenceManagerFactory(
+            String name, ClassLoader loader) {
+        return getOrCreatePersistenceManagerFactory(null, name, loader);
+    }
+
+    /**
+     * Returns the live {@link PersistenceManagerFactory} previously created
+     * by this method for the given overrides, name and class loader, or
+     * creates and remembers a new one if there is none or the remembered one
+     * has been closed. Factories are remembered per class loader and per
+     * (name, overrides) pair; the overrides are compared by value, so equal
+     * overrides share a factory. The registry owns the reference to each
+     * factory it creates and holds it strongly, so that a factory is not
+     * collected without having been closed and is not created again while
+     * it is still open. The application remains responsible for closing
+     * the factory: a closed factory is forgotten the next time the registry
+     * is consulted, for any class loader, and
+     * {@link #clearPersistenceManagerFactoryRegistry(ClassLoader)} forgets
+     * all factories of a class loader at once without closing them. A
+     * class loader referenced by a registered factory stays reachable until
+     * its factories have been forgotten; an application that is undeployed
+     * should therefore call
+     * {@link #clearPersistenceManagerFactoryRegistry(ClassLoader)} for its
+     * class loader. A factory that cannot be created is not remembered.
+     * <P>Concurrent callers asking for the same factory wait for a single
+     * creation rather than creating one each.
+     * @param overrides a Map containing properties that override properties
+     * defined in any resources loaded according to the "name" parameter
+     * @param name the name of the resource, PMF or persistence unit, as for
+     * {@link #getPersistenceManagerFactory(Map, String, ClassLoader, ClassLoader)}
+     * @param loader the class loader to use to load both the resources and
+     * the implementation classes
+     * @return the shared PersistenceManagerFactory
+     * @since 3.2
+     */
+    public static PersistenceManagerFactory getOrCreatePersistenceManagerFactory(
+            Map<?, ?> overrides, String name, ClassLoader loader) {
+        if (loader == null) {
+            throw new JDOFatalUserException(msg.msg(
+                "EXC_GetPMFNullLoader")); //NOI18N
+        }
+        RegistryKey key = new RegistryKey(name, overrides);
+        removeClosedPersistenceManagerFactories();
+        for (;;) {
+            RegisteredPMF registered;
+            synchronized (pmfRegistry) {
+                Map<RegistryKey, RegisteredPMF> pmfs = getRegisteredPMFs(loader);
+                registered = pmfs.get(key);
+                if (registered == null) {
+                    registered = new RegisteredPMF();
+                    pmfs.put(key, registered);
+                }
+            }
+            // create outside the registry lock so that different factories
+            // can be created concurrently
+            synchronized (registered) {
+                PersistenceManagerFactory pmf = registered.pmf;
+                if (pmf != null && !pmf.isClosed()) {
+                    return pmf;
+                }
+                synchronized (pmfRegistry) {
+                    if (registered.removed) {
+                        // removed as closed after the lookup; look up again
+                        continue;
+                    }
+                    registered.creating = true;
+                }
+                PersistenceManagerFactory created = null;
+                try {
+                    created = getPersistenceManagerFactory(
+                            key.overrides, name, loader, loader);
+                } finally {
+                    synchronized (pmfRegistry) {
+                        if (created != null) {
+                            registered.pmf = created;
+                        } else if (registered.pmf == null) {
+                            // do not remember a factory that failed
+                            registered.removed = true;
+                            Map<RegistryKey, RegisteredPMF> pmfs =
+                                pmfRegistry.get(loader);
+                            if (pmfs != null && pmfs.get(key) == registered) {
+                                pmfs.remove(key);
+                                if (pmfs.isEmpty()) {
+                                    pmfRegistry.remove(loader);
+                                }
+                            }
+                        }
+                        registered.creating = false;
+                    }
+                }
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Get the registered factories of a class loader, creating the map if
+     * there is none. The caller must hold the pmfRegistry monitor.
+     * @param loader the class loader
+     * @return the registered factories of the class loader
+     */
+    private static Map<RegistryKey, RegisteredPMF> getRegisteredPMFs(
+            ClassLoader loader) {
+        Map<RegistryKey, RegisteredPMF> pmfs = pmfRegistry.get(loader);
+        if (pmfs == null) {
+            pmfs = new HashMap<RegistryKey, RegisteredPMF>();
+            pmfRegistry.put(loader, pmfs);
+        }
+        return pmfs;
+    }
+
+    /**
+     * Forget all factories remembered by
+     * {@link #getOrCreatePersistenceManagerFactory(Map, String, ClassLoader)}
+     * for the given class loader. The factories themselves are not closed.
+     * @param loader the class loader
+     * @since 3.2
+     */
+    public static void clearPersistenceManagerFactoryRegistry(
+            ClassLoader loader) {
+        synchronized (pmfRegistry) {
+            pmfRegistry.remove(loader);
+        }
+    }
+
+    /**
+     * Remove the entries of all class loaders whose factory has been closed,
+     * and the class loaders left without entries, so that they can be
+     * collected. Entries whose factory is being created or created again
+     * are kept. The factories are asked whether they are closed outside the
+     * registry lock; an entry is removed only if its factory has not been
+     * replaced in the meantime.
+     */
+    private static void removeClosedPersistenceManagerFactories() {
+        List<RegisteredPMF> candidates = new ArrayList<RegisteredPMF>();
+        synchronized (pmfRegistry) {
+            for (Map<RegistryKey, RegisteredPMF> pmfs : pmfRegistry.values()) {
+                candidates.addAll(pmfs.values());
+            }
+        }
+        List<PersistenceManagerFactory> closed = null;
+        for (RegisteredPMF registered : candidates) {
+            PersistenceManagerFactory pmf = registered.pmf;
+            if (pmf != null && pmf.isClosed()) {
+                if (closed == null) {
+                    closed = new ArrayList<PersistenceManagerFactory>();
+                }
+                closed.add(pmf);
+            }
+        }
+        if (closed == null) {
+            return;
+        }
+        synchronized (pmfRegistry) {
+            for (Iterator<Map<RegistryKey, RegisteredPMF>> loaders =
+                    pmfRegistry.values().iterator(); loaders.hasNext();) {
+                Map<RegistryKey, RegisteredPMF> pmfs = loaders.next();
+                for (Iterator<RegisteredPMF> it = pmfs.values().iterator();
+                        it.hasNext();) {
+                    RegisteredPMF registered = it.next();
+                    // compare by identity: a replaced factory is kept
+                    for (PersistenceManagerFactory pmf : closed) {
+                        if (registered.pmf == pmf && !registered.creating) {
+                            registered.removed = true;
+                            it.remove();
+                            break;
+                        }
+                    }
+                }
+                if (pmfs.isEmpty()) {
+                    loaders.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The factories created by getOrCreatePersistenceManagerFactory, keyed
+     * weakly by the class loader used to create them.
+     * @since 3.2
+     */
+    private static final Map<ClassLoader, Map<RegistryKey, RegisteredPMF>>
+        pmfRegistry =
+            new WeakHashMap<ClassLoader, Map<RegistryKey, RegisteredPMF>>();
+
+    /**
+     * The name and overrides identifying a registered factory.
+     * @since 3.2
+     */
+    private static final class RegistryKey {
+        final String name;
+        final Map<Object, Object> overrides;
+        final int hashCode;
+
+        RegistryKey(String name, Map<?, ?> overrides) {
+            this.name = (name == null
+                ? ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME : name.trim());
+            // copy so that later changes by the caller do not affect the key
+            this.overrides = (overrides == null
+                ? null : new HashMap<Object, Object>(overrides));
+            this.hashCode = this.name.hashCode() * 31
+                + (this.overrides == null ? 0 : this.overrides.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RegistryKey)) {
+                return false;
+            }
+            RegistryKey other = (RegistryKey) obj;
+            return name.equals(other.name)
+                && (overrides == null
+                    ? other.overrides == null
+                    : overrides.equals(other.overrides));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Holder for a registered factory; its monitor serializes creation.
+     * The fields are written while holding the pmfRegistry monitor.
+     * @since 3.2
+     */
+    private static final class RegisteredPMF {
+        /** The factory, or null if none has been created yet. */
+        volatile PersistenceManagerFactory pmf;
+        /** Whether the factory is being created; the entry is kept. */
+        boolean creating;
+        /** Whether the entry was removed from the registry. */
+        boolean removed;
+    }
+
     /** Invoke the getPersistenceManagerFactory method on the implementation.
      * If the overrides parameter to this method is not null, the static method 
      * with Map overrides, Map properties parameters will be invoked.
      * If the overrides parameter to this method is null,  the static method 
      * with Map properties parameter will be invoked.
+     * The implementation class and method are resolved once per class loader
+     * and then invoked through a cached <code>MethodHandle</code> in a
+     * doPrivileged block.
      * @param pmfClassName the name of the implementation factory class
      * @param overrides a Map of overrides
      * @param properties a Map of properties
@@ -1128,82 +1819,145 @@ public class JDOHelper implements Constants {
     protected static PersistenceManagerFactory
         invokeGetPersistenceManagerFactoryOnImplementation(
             String pmfClassName, Map<?, ?> overrides, Map<?, ?> properties, ClassLoader cl) {
-        if (overrides != null) {
-            // overrides is not null; use getPersistenceManagerFactory(Map overrides, Map props)
-            try {
-                Class<?> implClass = forName(pmfClassName, true, cl);
-                Method m = getMethod(implClass,
-                        "getPersistenceManagerFactory", //NOI18N
-                        new Class[]{Map.class, Map.class});
-                PersistenceManagerFactory pmf = 
-                    (PersistenceManagerFactory) invoke(m,
-                        null, new Object[]{overrides, properties});
-                if (pmf == null) {
-                        throw new JDOFatalInternalException(msg.msg (
-                            "EXC_GetPMFNullPMF", pmfClassName)); //NOI18N
-                    }
-                return pmf;
+        MethodHandle handle;
+        Object event = JDOBootstrapEvents.begin();
+        try {
+            handle = getPersistenceManagerFactoryMethod(
+                pmfClassName, cl, overrides != null);
+        } catch (ClassNotFoundException e) {
+            throw new JDOFatalUserException(msg.msg(
+                    "EXC_GetPMFClassNotFound", pmfClassName), e); //NOI18N
+        } catch (NoSuchMethodException e) {
+            throw new JDOFatalInternalException(msg.msg(overrides != null
+                    ? "EXC_GetPMFNoSuchMethod2"
+                    : "EXC_GetPMFNoSuchMethod", pmfClassName), e); //NOI18N
+        } catch (NullPointerException e) {
+            throw new JDOFatalInternalException (msg.msg(
+                "EXC_GetPMFNullPointerException", pmfClassName), e); //NOI18N
+        } catch (IllegalAccessException e) {
+            throw new JDOFatalUserException(msg.msg(
+                    "EXC_GetPMFIllegalAccess", pmfClassName), e); //NOI18N
+        } finally {
+            JDOBootstrapEvents.end(event,
+                JDOBootstrapEvents.PHASE_CLASS_LOADING, properties, cl);
+        }
 
-            } catch (ClassNotFoundException e) {
-                throw new JDOFatalUserException(msg.msg(
-                        "EXC_GetPMFClassNotFound", pmfClassName), e); //NOI18N
-            } catch (NoSuchMethodException e) {
-                throw new JDOFatalInternalException(msg.msg(
-                        "EXC_GetPMFNoSuchMethod2", pmfClassName), e); //NOI18N
-            } catch (NullPointerException e) {
-                throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFNullPointerException", pmfClassName), e); //NOI18N
-            } catch (IllegalAccessException e) {
-                throw new JDOFatalUserException(msg.msg(
-                        "EXC_GetPMFIllegalAccess", pmfClassName), e); //NOI18N
-            } catch (ClassCastException e) {
-                throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFClassCastException", pmfClassName), e); //NOI18N
-            } catch (InvocationTargetException ite) {
-                Throwable nested = ite.getTargetException();
-                if (nested instanceof JDOException) {
-                    throw (JDOException)nested;
-                } else throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFUnexpectedException"), ite); //NOI18N
+        Object result;
+        event = JDOBootstrapEvents.begin();
+        try {
+            result = invoke(handle, overrides, properties);
+        } catch (JDOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new JDOFatalInternalException (msg.msg(
+                "EXC_GetPMFUnexpectedException"), t); //NOI18N
+        } finally {
+            JDOBootstrapEvents.end(event,
+                JDOBootstrapEvents.PHASE_FACTORY_METHOD, properties, cl);
+        }
+
+        PersistenceManagerFactory pmf;
+        try {
+            pmf = (PersistenceManagerFactory) result;
+        } catch (ClassCastException e) {
+            throw new JDOFatalInternalException (msg.msg(
+                "EXC_GetPMFClassCastException", pmfClassName), e); //NOI18N
+        }
+        if (pmf == null) {
+            throw new JDOFatalInternalException(msg.msg (
+                "EXC_GetPMFNullPMF", pmfClassName)); //NOI18N
+        }
+        return pmf;
+    }
+
+    /**
+     * The implementation classes that have been loaded by name, keyed
+     * weakly by the class loader used to load them. The classes are
+     * held weakly too, so that the cache does not keep the class loader
+     * reachable; a class remains reachable as long as its class loader.
+     * @since 3.2
+     */
+    private static final Map<ClassLoader, Map<String, WeakReference<Class<?>>>>
+        pmfImplementationClasses =
+            new WeakHashMap<ClassLoader, Map<String, WeakReference<Class<?>>>>();
+
+    /**
+     * The resolved getPersistenceManagerFactory methods per implementation
+     * class. Index 0 holds the method with Map properties parameter, index
+     * 1 the method with Map overrides, Map properties parameters.
+     * Each handle is adapted to return Object.
+     * @since 3.2
+     */
+    private static final ClassValue<MethodHandle[]> pmfFactoryMethods =
+        new ClassValue<MethodHandle[]>() {
+            protected MethodHandle[] computeValue(Class<?> type) {
+                return new MethodHandle[2];
             }
-        } else {
-            // overrides is null; use getPersistenceManagerFactory(Map props)
-            try {
-                Class<?> implClass = forName(pmfClassName, true, cl);
-                Method m = getMethod(implClass,
-                        "getPersistenceManagerFactory", //NOI18N
-                        new Class[]{Map.class});
-                PersistenceManagerFactory pmf = 
-                    (PersistenceManagerFactory) invoke(m,
-                        null, new Object[]{properties});
-                if (pmf == null) {
-                        throw new JDOFatalInternalException(msg.msg (
-                            "EXC_GetPMFNullPMF", pmfClassName)); //NOI18N
-                    }
-                return pmf;
-            } catch (ClassNotFoundException e) {
-                throw new JDOFatalUserException(msg.msg(
-                        "EXC_GetPMFClassNotFound", pmfClassName), e); //NOI18N
-            } catch (NoSuchMethodException e) {
-                throw new JDOFatalInternalException(msg.msg(
-                        "EXC_GetPMFNoSuchMethod", pmfClassName), e); //NOI18N
-            } catch (NullPointerException e) {
-                throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFNullPointerException", pmfClassName), e); //NOI18N
-            } catch (IllegalAccessException e) {
-                throw new JDOFatalUserException(msg.msg(
-                        "EXC_GetPMFIllegalAccess", pmfClassName), e); //NOI18N
-            } catch (ClassCastException e) {
-                throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFClassCastException", pmfClassName), e); //NOI18N
-            } catch (InvocationTargetException ite) {
-                Throwable nested = ite.getTargetException();
-                if (nested instanceof JDOException) {
-                    throw (JDOException)nested;
-                } else throw new JDOFatalInternalException (msg.msg(
-                    "EXC_GetPMFUnexpectedException"), ite); //NOI18N
+        };
+
+    /**
+     * Get the static getPersistenceManagerFactory method of the named
+     * implementation class, loading the class and resolving the method
+     * on first use only.
+     * @param pmfClassName the name of the implementation factory class
+     * @param cl the class loader to use to load the implementation class
+     * @param withOverrides whether to get the method with Map overrides,
+     * Map properties parameters instead of the method with Map properties
+     * parameter
+     * @return the method handle, adapted to return Object
+     * @throws ClassNotFoundException if the class cannot be loaded
+     * @throws NoSuchMethodException if the class has no such public method
+     * @throws NullPointerException if the method is not static
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    private static MethodHandle getPersistenceManagerFactoryMethod(
+            String pmfClassName, ClassLoader cl, boolean withOverrides)
+            throws ClassNotFoundException, NoSuchMethodException,
+                IllegalAccessException {
+        Class<?> implClass = null;
+        synchronized (pmfImplementationClasses) {
+            Map<String, WeakReference<Class<?>>> classes =
+                pmfImplementationClasses.get(cl);
+            WeakReference<Class<?>> ref =
+                classes == null ? null : classes.get(pmfClassName);
+            if (ref != null) {
+                implClass = ref.get();
+            }
+        }
+        if (implClass == null) {
+            implClass = forName(pmfClassName, true, cl);
+            synchronized (pmfImplementationClasses) {
+                Map<String, WeakReference<Class<?>>> classes =
+                    pmfImplementationClasses.get(cl);
+                if (classes == null) {
+                    classes = new HashMap<String, WeakReference<Class<?>>>();
+                    pmfImplementationClasses.put(cl, classes);
+                }
+                classes.put(pmfClassName,
+                    new WeakReference<Class<?>>(implClass));
+            }
+        }
+
+        MethodHandle[] handles = pmfFactoryMethods.get(implClass);
+        int index = withOverrides ? 1 : 0;
+        MethodHandle handle = handles[index];
+        if (handle == null) {
+            Class<?>[] parameterTypes = withOverrides
+                ? new Class[]{Map.class, Map.class}
+                : new Class[]{Map.class};
+            Method m = getMethod(implClass,
+                    "getPersistenceManagerFactory", //NOI18N
+                    parameterTypes);
+            if (!Modifier.isStatic(m.getModifiers())) {
+                // reflective invocation with a null instance
+                throw new NullPointerException(m.toString());
             }
+            handle = MethodHandles.publicLookup().unreflect(m).asType(
+                MethodType.methodType(Object.class, parameterTypes));
+            // a race here resolves the same handle twice, which is harmless
+            handles[index] = handle;
         }
+        return handle;
     }
 
     /** Load a Properties instance by name from the class loader.
@@ -1216,6 +1970,7 @@ public class JDOHelper implements Constants {
             ClassLoader resourceLoader, String name) {
         InputStream in = null;
         Properties props = null;
+        Object event = JDOBootstrapEvents.begin();
         // try to load resources from properties file
         try {
             in = getResourceAsStream(resourceLoader, name);
@@ -1235,6 +1990,8 @@ public class JDOHelper implements Constants {
                 } catch (IOException ioe) {
                 }
             }
+            JDOBootstrapEvents.end(event,
+                JDOBootstrapEvents.PHASE_CONFIG_PARSE, name, resourceLoader);
         }
         return props;
     }
@@ -1278,22 +2035,60 @@ public class JDOHelper implements Constants {
             String name,
             ClassLoader resourceLoader,
             String jdoconfigResourceName) {
-        // key is PU name, value is Map of PU properties
-        Map<String,Map<Object,Object>> propertiesByNameInAllConfigs
-                = new HashMap<String,Map<Object,Object>>();
-        try {
-            URL firstFoundConfigURL = null;
-
-            // get all JDO configurations
-            Enumeration<URL> resources =
-                getResources(resourceLoader, jdoconfigResourceName);
-
-            if (resources.hasMoreElements()) {
-                ArrayList<URL> processedResources = new ArrayList<URL>();
+        return getNamedPMFPropertiesForNames(Collections.singleton(name),
+            resourceLoader, jdoconfigResourceName).get(name);
+    }
 
-                // get ready to parse XML
-                DocumentBuilderFactory factory = getDocumentBuilderFactory();
-                do {
+    /**
+     * Find and return the properties of several named
+     * {@link PersistenceManagerFactory}s. Each configuration resource is
+     * read at most once for all the requested names, with the same checks
+     * as {@link #getNamedPMFProperties(String,ClassLoader,String)} applied
+     * to each name.
+     *
+     * @param names The persistence unit names; null elements are disallowed.
+     * @param resourceLoader The ClassLoader used to load the standard JDO
+     * configuration file.
+     * @param jdoconfigResourceName The name of the configuration file to read.
+     * In public usage, this should always be the value of
+     * {@link Constants#JDOCONFIG_RESOURCE_NAME}.
+     * @return The properties keyed by requested name; names that were not
+     * found have no entry.
+     * @since 3.2
+     * @throws JDOFatalUserException if multiple named PMF property sets are
+     * found with one of the given names, or any other exception is
+     * encountered.
+     */
+    protected static Map<String,Map<Object,Object>> getNamedPMFPropertiesForNames(
+            Collection<String> names,
+            ClassLoader resourceLoader,
+            String jdoconfigResourceName) {
+        // key is PU name, value is Map of PU properties
+        Map<String,Map<Object,Object>> propertiesByNameInAllConfigs
+                = new HashMap<String,Map<Object,Object>>();
+        // key is PU name, value is the first config the PU was found in
+        Map<String,URL> firstFoundConfigURLs = new HashMap<String,URL>();
+        String eventName = names.size() == 1
+            ? names.iterator().next()
+            : names.toString();
+        try {
+            // get all JDO configurations
+            Object event = JDOBootstrapEvents.begin();
+            Enumeration<URL> resources;
+            try {
+                resources = getResources(resourceLoader, jdoconfigResourceName);
+            } finally {
+                JDOBootstrapEvents.end(event,
+                    JDOBootstrapEvents.PHASE_RESOURCE_ENUMERATION,
+                    eventName, resourceLoader);
+            }
+
+            if (resources.hasMoreElements()) {
+                ArrayList<URL> processedResources = new ArrayList<URL>();
+
+                // only get ready to parse XML if a config is not cached
+                DocumentBuilderFactory factory = null;
+                do {
                     URL currentConfigURL = resources.nextElement();
                     if (processedResources.contains(currentConfigURL)) {
                         continue;
@@ -1301,20 +2096,103 @@ public class JDOHelper implements Constants {
                     else {
                         processedResources.add(currentConfigURL);
                     }
-                    
-                    Map<String,Map<Object,Object>> propertiesByNameInCurrentConfig =
-                        readNamedPMFProperties(
-                            currentConfigURL,
-                            name,
-                            factory);
 
-                    // try to detect duplicate requested PU
-                    if (propertiesByNameInCurrentConfig.containsKey(name)) {
+                    long lastModified = getLastModified(currentConfigURL);
+                    Map<String,Map<String,Map<Object,Object>>>
+                        propertiesByRequestedName =
+                            new HashMap<String,Map<String,Map<Object,Object>>>();
+                    List<String> uncachedNames = new ArrayList<String>();
+                    for (String name : names) {
+                        Map<String,Map<Object,Object>> cached =
+                            getCachedNamedPMFProperties(
+                                resourceLoader,
+                                currentConfigURL,
+                                lastModified,
+                                name);
+                        if (cached == null) {
+                            uncachedNames.add(name);
+                        } else {
+                            propertiesByRequestedName.put(name, cached);
+                        }
+                    }
+                    if (!uncachedNames.isEmpty()) {
+                        // read the config once for all uncached names,
+                        // preferring its build-time precompiled form
+                        Map<String,Map<Object,Object>> parsed = null;
+                        event = JDOBootstrapEvents.begin();
+                        try {
+                            // remember a missing precompiled form, so that
+                            // it is not probed for on every lookup
+                            if (!isCachedPrecompiledAbsent(resourceLoader,
+                                    currentConfigURL, lastModified)) {
+                                Properties precompiled =
+                                    JDOConfigCompiler.readPrecompiled(
+                                        currentConfigURL);
+                                if (precompiled == null) {
+                                    putCachedPrecompiledAbsent(resourceLoader,
+                                        currentConfigURL, lastModified);
+                                } else {
+                                    parsed = JDOConfigCompiler
+                                        .getPrecompiledPMFProperties(
+                                            precompiled,
+                                            currentConfigURL,
+                                            trimPMFNames(uncachedNames));
+                                }
+                            }
+                            if (parsed == null && useStreamingJdoconfigReader()) {
+                                parsed = readRequestedPMFPropertiesForNames(
+                                    currentConfigURL,
+                                    uncachedNames);
+                            } else if (parsed == null) {
+                                if (factory == null) {
+                                    factory = getDocumentBuilderFactory();
+                                }
+                                parsed = readNamedPMFPropertiesForNames(
+                                    currentConfigURL,
+                                    uncachedNames,
+                                    factory);
+                            }
+                        } finally {
+                            JDOBootstrapEvents.end(event,
+                                JDOBootstrapEvents.PHASE_CONFIG_PARSE,
+                                eventName, resourceLoader);
+                        }
+                        for (String name : uncachedNames) {
+                            Map<String,Map<Object,Object>>
+                                propertiesByNameInCurrentConfig = parsed;
+                            if (uncachedNames.size() > 1) {
+                                // cache only what this name needs
+                                Map<Object,Object> found = parsed.get(name);
+                                propertiesByNameInCurrentConfig = found == null
+                                    ? Collections.<String,Map<Object,Object>>emptyMap()
+                                    : Collections.singletonMap(name, found);
+                            }
+                            putCachedNamedPMFProperties(
+                                resourceLoader,
+                                currentConfigURL,
+                                lastModified,
+                                name,
+                                propertiesByNameInCurrentConfig);
+                            propertiesByRequestedName.put(
+                                name, propertiesByNameInCurrentConfig);
+                        }
+                    }
+
+                    for (String name : names) {
+                        Map<String,Map<Object,Object>>
+                            propertiesByNameInCurrentConfig =
+                                propertiesByRequestedName.get(name);
+                        // try to detect duplicate requested PU
+                        if (!propertiesByNameInCurrentConfig.containsKey(name)) {
+                            continue;
+                        }
                         // possible dup -- check for it
+                        URL firstFoundConfigURL = firstFoundConfigURLs.get(name);
                         if (firstFoundConfigURL == null) {
                             firstFoundConfigURL = currentConfigURL;
+                            firstFoundConfigURLs.put(name, currentConfigURL);
                         }
-                        
+
                         if (propertiesByNameInAllConfigs.containsKey(name))
                             throw new JDOFatalUserException (msg.msg(
                                 "EXC_DuplicateRequestedNamedPMFFoundInDifferentConfigs",
@@ -1323,10 +2201,10 @@ public class JDOHelper implements Constants {
                                         : name,
                                 firstFoundConfigURL.toExternalForm(),
                                 currentConfigURL.toExternalForm())); //NOI18N
+                        // no dups -- remember the found PU and keep going
+                        propertiesByNameInAllConfigs.put(name,
+                            propertiesByNameInCurrentConfig.get(name));
                     }
-                    // no dups -- add found PUs to all PUs and keep going
-                    propertiesByNameInAllConfigs
-                        .putAll(propertiesByNameInCurrentConfig);
                 } while (resources.hasMoreElements());
             }
         }
@@ -1336,12 +2214,210 @@ public class JDOHelper implements Constants {
         }
         catch (IOException ioe) {
             throw new JDOFatalUserException (msg.msg (
-                "EXC_GetPMFIOExceptionRsrc", name), ioe); //NOI18N
+                "EXC_GetPMFIOExceptionRsrc", eventName), ioe); //NOI18N
         }
 
         // done with reading all config resources;
-        // return what we found, which may very well be null
-        return (Map<Object,Object>) propertiesByNameInAllConfigs.get(name);
+        // return what we found, which may very well be nothing.
+        // The found properties may be shared with the cache, so return copies
+        Map<String,Map<Object,Object>> result =
+            new HashMap<String,Map<Object,Object>>();
+        for (Map.Entry<String,Map<Object,Object>> entry
+                : propertiesByNameInAllConfigs.entrySet()) {
+            Properties props = new Properties();
+            props.putAll(entry.getValue());
+            result.put(entry.getKey(), props);
+        }
+        return result;
+    }
+
+    /**
+     * The cache of parsed JDO configuration resources. The key is the
+     * class loader used to find the resources, held weakly so that the
+     * class loader can be garbage collected. The value maps the external
+     * form of the resource URL to the parsed properties of that resource.
+     * @since 3.2
+     */
+    private static final Map<ClassLoader, Map<String, JdoconfigCacheEntry>>
+        jdoconfigCache =
+            new WeakHashMap<ClassLoader, Map<String, JdoconfigCacheEntry>>();
+
+    /**
+     * The parsed properties of a single JDO configuration resource, valid
+     * as long as the last-modified time of the resource does not change.
+     * Resources that are neither files nor entries of jar files are
+     * treated as immutable once cached; see {@link #getLastModified}.
+     * The properties are kept per requested PMF name because the checks
+     * for duplicate names and properties depend on the requested name.
+     * @since 3.2
+     */
+    private static class JdoconfigCacheEntry {
+        /** The last-modified time of the resource when parsed. */
+        final long lastModified;
+
+        /** Whether the resource has no precompiled form. */
+        boolean precompiledAbsent;
+
+        /** The parsed properties keyed by requested PMF name. */
+        final Map<String, Map<String,Map<Object,Object>>> propertiesByRequestedName =
+            new HashMap<String, Map<String,Map<Object,Object>>>();
+
+        JdoconfigCacheEntry(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Get the cached properties of a JDO configuration resource parsed
+     * for the requested PMF name.
+     * @param resourceLoader the class loader used to find the resource
+     * @param url the URL of the resource
+     * @param lastModified the current last-modified time of the resource,
+     * or -1 if unknown
+     * @param requestedPMFName the requested PMF name
+     * @return the cached properties, or null if not cached or out of date
+     */
+    private static Map<String,Map<Object,Object>> getCachedNamedPMFProperties(
+            ClassLoader resourceLoader, URL url, long lastModified,
+            String requestedPMFName) {
+        JdoconfigCacheEntry entry =
+            getJdoconfigCacheEntry(resourceLoader, url, lastModified, false);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (jdoconfigCache) {
+            return entry.propertiesByRequestedName.get(requestedPMFName);
+        }
+    }
+
+    /**
+     * Return whether a JDO configuration resource is cached as having no
+     * precompiled form.
+     * @param resourceLoader the class loader used to find the resource
+     * @param url the URL of the resource
+     * @param lastModified the current last-modified time of the resource,
+     * or -1 if unknown
+     * @return true if the resource is cached as having no precompiled form
+     */
+    private static boolean isCachedPrecompiledAbsent(
+            ClassLoader resourceLoader, URL url, long lastModified) {
+        JdoconfigCacheEntry entry =
+            getJdoconfigCacheEntry(resourceLoader, url, lastModified, false);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (jdoconfigCache) {
+            return entry.precompiledAbsent;
+        }
+    }
+
+    /**
+     * Cache that a JDO configuration resource has no precompiled form.
+     * The absence is forgotten with the parsed properties when the
+     * last-modified time of the resource changes.
+     * @param resourceLoader the class loader used to find the resource
+     * @param url the URL of the resource
+     * @param lastModified the last-modified time of the resource,
+     * or -1 if unknown
+     */
+    private static void putCachedPrecompiledAbsent(
+            ClassLoader resourceLoader, URL url, long lastModified) {
+        JdoconfigCacheEntry entry =
+            getJdoconfigCacheEntry(resourceLoader, url, lastModified, true);
+        if (entry != null) {
+            synchronized (jdoconfigCache) {
+                entry.precompiledAbsent = true;
+            }
+        }
+    }
+
+    /**
+     * Get the current cache entry of a JDO configuration resource.
+     * @param resourceLoader the class loader used to find the resource
+     * @param url the URL of the resource
+     * @param lastModified the current last-modified time of the resource,
+     * or -1 if unknown
+     * @param create whether to create the entry if there is no current one
+     * @return the entry, or null if there is none or the last-modified
+     * time is unknown
+     */
+    private static JdoconfigCacheEntry getJdoconfigCacheEntry(
+            ClassLoader resourceLoader, URL url, long lastModified,
+            boolean create) {
+        if (lastModified == -1) {
+            return null;
+        }
+        synchronized (jdoconfigCache) {
+            Map<String, JdoconfigCacheEntry> entries =
+                jdoconfigCache.get(resourceLoader);
+            if (entries == null) {
+                if (!create) {
+                    return null;
+                }
+                entries = new HashMap<String, JdoconfigCacheEntry>();
+                jdoconfigCache.put(resourceLoader, entries);
+            }
+            String key = url.toExternalForm();
+            JdoconfigCacheEntry entry = entries.get(key);
+            if (entry == null || entry.lastModified != lastModified) {
+                if (!create) {
+                    return null;
+                }
+                entry = new JdoconfigCacheEntry(lastModified);
+                entries.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Cache the properties of a JDO configuration resource parsed for the
+     * requested PMF name. Resources with unknown last-modified time are
+     * not cached.
+     * @param resourceLoader the class loader used to find the resource
+     * @param url the URL of the resource
+     * @param lastModified the last-modified time of the resource when parsed,
+     * or -1 if unknown
+     * @param requestedPMFName the requested PMF name
+     * @param propertiesByName the parsed properties
+     */
+    private static void putCachedNamedPMFProperties(
+            ClassLoader resourceLoader, URL url, long lastModified,
+            String requestedPMFName,
+            Map<String,Map<Object,Object>> propertiesByName) {
+        JdoconfigCacheEntry entry =
+            getJdoconfigCacheEntry(resourceLoader, url, lastModified, true);
+        if (entry == null) {
+            return;
+        }
+        synchronized (jdoconfigCache) {
+            entry.propertiesByRequestedName.put(
+                requestedPMFName, propertiesByName);
+        }
+    }
+
+    /**
+     * Discard all cached JDO configuration resources, so that the next
+     * lookup of a named <code>PersistenceManagerFactory</code> parses
+     * the resources again.
+     * @since 3.2
+     */
+    public static void clearJdoconfigCache() {
+        synchronized (jdoconfigCache) {
+            jdoconfigCache.clear();
+        }
+    }
+
+    /**
+     * Discard the cached JDO configuration resources that were found via
+     * the given class loader.
+     * @param resourceLoader the class loader used to find the resources
+     * @since 3.2
+     */
+    public static void clearJdoconfigCache(ClassLoader resourceLoader) {
+        synchronized (jdoconfigCache) {
+            jdoconfigCache.remove(resourceLoader);
+        }
     }
 
 
@@ -1409,9 +2485,26 @@ public class JDOHelper implements Constants {
             URL url,
             String requestedPMFName,
             DocumentBuilderFactory factory) {
-        requestedPMFName = requestedPMFName == null
-            ? ""
-            : requestedPMFName.trim();
+        return readNamedPMFPropertiesForNames(url,
+            Collections.singleton(requestedPMFName), factory);
+    }
+
+    /**
+     * Reads JDO configuration file, creates a Map for each
+     * persistence-manager-factory, then returns the map. The checks for
+     * duplicate names and properties are applied to each requested name.
+     * @param url URL of a JDO configuration file compliant with javax/jdo/jdoconfig.xsd.
+     * @param requestedPMFNames The names of the requested persistence units.
+     * @param factory The <code>DocumentBuilderFactory</code> to use for XML parsing.
+     * @return a Map&lt;String,Map&gt; holding persistence unit configurations; for the
+     *   anonymous persistence unit, the value of the String key is the empty string, "".
+     * @since 3.2
+     */
+    protected static Map<String,Map<Object,Object>> readNamedPMFPropertiesForNames(
+            URL url,
+            Collection<String> requestedPMFNames,
+            DocumentBuilderFactory factory) {
+        Collection<String> requestedNames = trimPMFNames(requestedPMFNames);
 
         Map<String,Map<Object,Object>>
                 propertiesByName = new HashMap<String,Map<Object,Object>>();
@@ -1419,6 +2512,8 @@ public class JDOHelper implements Constants {
         try {
             DocumentBuilder builder = factory.newDocumentBuilder();
             builder.setErrorHandler(getErrorHandler());
+            // serve the bundled DTDs and schemas without network access
+            builder.setEntityResolver(JDOSchemaHelper.getEntityResolver());
 
             in = openStream(url);
             Document doc = builder.parse(in);
@@ -1442,64 +2537,16 @@ public class JDOHelper implements Constants {
                 Properties pmfPropertiesFromElements
                     = readPropertiesFromPMFSubelements(pmfElement, url);
 
-                // for informative error handling, get name (or names) now
-                String pmfNameFromAtts =
-                    pmfPropertiesFromAttributes.getProperty(PROPERTY_NAME);
-                String pmfNameFromElem =
-                    pmfPropertiesFromElements.getProperty(PROPERTY_NAME);
-
-                String pmfName = null;
-                if (isNullOrBlank(pmfNameFromAtts)) {
-                    // no PMF name attribute given
-                    if (!isNullOrBlank(pmfNameFromElem)) {
-                        // PMF name element was given
-                        pmfName = pmfNameFromElem;
-                    }
-                    else  {
-                        // PMF name not given at all, means the "anonymous" PMF
-                        pmfName = ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME;
-                    }
-                }
-                else {
-                    // PMF name given in an attribute
-                    if (!isNullOrBlank(pmfNameFromElem)) {
-                        // exception -- PMF name given as both att & elem
-                        throw new JDOFatalUserException(
-                            msg.msg(
-                                "EXC_DuplicatePMFNamePropertyFoundWithinConfig",
-                                pmfNameFromAtts,
-                                pmfNameFromElem,
-                                url.toExternalForm()));
-                    }
-                    pmfName = pmfNameFromAtts;
-                }
-                pmfName = pmfName == null ? "" : pmfName.trim();
-
-                // check for duplicate properties among atts & elems
-                if (requestedPMFName.equals(pmfName)) {
-                    Iterator<?> it =
-                        pmfPropertiesFromAttributes.keySet().iterator();
-                    while (it.hasNext()) {
-                        String property = (String) it.next();
-                        if (pmfPropertiesFromElements.contains(property)) {
-                            throw new JDOFatalUserException(
-                                msg.msg(
-                                    "EXC_DuplicatePropertyFound",
-                                    property,
-                                    pmfName,
-                                    url.toExternalForm()));
-                        }
-                    }
-                }
-                
-                // at this point, we're guaranteed not to have duplicate
-                // properties -- merge them
-                Properties pmfProps = new Properties();
-                pmfProps.putAll(pmfPropertiesFromAttributes);
-                pmfProps.putAll(pmfPropertiesFromElements);
+                String pmfName = getPMFName(pmfPropertiesFromAttributes,
+                    pmfPropertiesFromElements, url);
+                boolean requested = requestedNames.contains(pmfName);
+                Properties pmfProps = mergePMFProperties(
+                    requested ? pmfName : null,
+                    pmfName, pmfPropertiesFromAttributes,
+                    pmfPropertiesFromElements, url);
 
                 // check for duplicate requested PMF name
-                if (pmfName.equals(requestedPMFName)
+                if (requested
                     && propertiesByName.containsKey(pmfName)) {
 
                     throw new JDOFatalUserException(msg.msg(
@@ -1553,6 +2600,437 @@ public class JDOHelper implements Constants {
         }
     }
 
+    /**
+     * Get the name of a persistence-manager-factory element, given as
+     * either its "name" attribute or a "name" property element.
+     * @param pmfPropertiesFromAttributes the properties read from the
+     * attributes of the element
+     * @param pmfPropertiesFromElements the properties read from the
+     * subelements of the element
+     * @param url URL of the JDO configuration file
+     * @return the trimmed name; the empty string for the anonymous PMF
+     * @throws JDOFatalUserException if the name is given both as an
+     * attribute and as a property element
+     * @since 3.2
+     */
+    protected static String getPMFName(
+            Properties pmfPropertiesFromAttributes,
+            Properties pmfPropertiesFromElements,
+            URL url) {
+        // for informative error handling, get name (or names) now
+        String pmfNameFromAtts =
+            pmfPropertiesFromAttributes.getProperty(PROPERTY_NAME);
+        String pmfNameFromElem =
+            pmfPropertiesFromElements.getProperty(PROPERTY_NAME);
+
+        String pmfName = null;
+        if (isNullOrBlank(pmfNameFromAtts)) {
+            // no PMF name attribute given
+            if (!isNullOrBlank(pmfNameFromElem)) {
+                // PMF name element was given
+                pmfName = pmfNameFromElem;
+            }
+            else  {
+                // PMF name not given at all, means the "anonymous" PMF
+                pmfName = ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME;
+            }
+        }
+        else {
+            // PMF name given in an attribute
+            if (!isNullOrBlank(pmfNameFromElem)) {
+                // exception -- PMF name given as both att & elem
+                throw new JDOFatalUserException(
+                    msg.msg(
+                        "EXC_DuplicatePMFNamePropertyFoundWithinConfig",
+                        pmfNameFromAtts,
+                        pmfNameFromElem,
+                        url.toExternalForm()));
+            }
+            pmfName = pmfNameFromAtts;
+        }
+        return pmfName == null ? "" : pmfName.trim();
+    }
+
+    /**
+     * Trim the requested PMF names; a null name stands for the anonymous
+     * PMF, whose name is the empty string.
+     * @param requestedPMFNames the requested names
+     * @return the trimmed names
+     * @since 3.2
+     */
+    private static Collection<String> trimPMFNames(
+            Collection<String> requestedPMFNames) {
+        if (requestedPMFNames.size() == 1) {
+            String name = requestedPMFNames.iterator().next();
+            return Collections.singleton(name == null ? "" : name.trim());
+        }
+        Collection<String> trimmed = new HashSet<String>();
+        for (String name : requestedPMFNames) {
+            trimmed.add(name == null ? "" : name.trim());
+        }
+        return trimmed;
+    }
+
+    /**
+     * Merge the properties read from the attributes and the subelements
+     * of a persistence-manager-factory element. If the element is the
+     * requested one, check for duplicate properties first.
+     * @param requestedPMFName the trimmed name of the requested PMF, or
+     * null if the element is not requested
+     * @param pmfName the trimmed name of the PMF
+     * @param pmfPropertiesFromAttributes the properties read from the
+     * attributes of the element
+     * @param pmfPropertiesFromElements the properties read from the
+     * subelements of the element
+     * @param url URL of the JDO configuration file
+     * @return the merged properties
+     * @throws JDOFatalUserException if a duplicate property is found
+     * @since 3.2
+     */
+    protected static Properties mergePMFProperties(
+            String requestedPMFName,
+            String pmfName,
+            Properties pmfPropertiesFromAttributes,
+            Properties pmfPropertiesFromElements,
+            URL url) {
+        // check for duplicate properties among atts & elems
+        if (pmfName.equals(requestedPMFName)) {
+            Iterator<?> it =
+                pmfPropertiesFromAttributes.keySet().iterator();
+            while (it.hasNext()) {
+                String property = (String) it.next();
+                if (pmfPropertiesFromElements.contains(property)) {
+                    throw new JDOFatalUserException(
+                        msg.msg(
+                            "EXC_DuplicatePropertyFound",
+                            property,
+                            pmfName,
+                            url.toExternalForm()));
+                }
+            }
+        }
+        
+        // at this point, we're guaranteed not to have duplicate
+        // properties -- merge them
+        Properties pmfProps = new Properties();
+        pmfProps.putAll(pmfPropertiesFromAttributes);
+        pmfProps.putAll(pmfPropertiesFromElements);
+        return pmfProps;
+    }
+
+    /**
+     * The StAX factory used to read JDO configuration files, created
+     * on first use.
+     */
+    private static XMLInputFactory xmlInputFactory;
+
+    /**
+     * Return whether JDO configuration files are read with the streaming
+     * reader. A <code>DocumentBuilderFactory</code> or
+     * <code>ErrorHandler</code> registered with <code>JDOImplHelper</code>
+     * can only be honored by the DOM reader, so the streaming reader is
+     * used only if neither is registered.
+     * @return true if the streaming reader is used
+     * @since 3.2
+     */
+    @SuppressWarnings("static-access")
+    protected static boolean useStreamingJdoconfigReader() {
+        return implHelper.getRegisteredDocumentBuilderFactory() == null
+            && implHelper.getRegisteredErrorHandler() == null;
+    }
+
+    /**
+     * Get the StAX factory used to read JDO configuration files.
+     * @return the factory
+     * @since 3.2
+     */
+    protected static synchronized XMLInputFactory getXMLInputFactory() {
+        if (xmlInputFactory == null) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+                Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_VALIDATING,
+                Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_COALESCING,
+                Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.RESOLVER,
+                JDOSchemaHelper.getXMLResolver());
+            xmlInputFactory = factory;
+        }
+        return xmlInputFactory;
+    }
+
+    /**
+     * Reads a JDO configuration file with a streaming parser and returns
+     * the properties of the requested persistence-manager-factory only.
+     * No document tree is built, and the properties of the other
+     * persistence-manager-factory elements are discarded as soon as their
+     * element has been read. The whole file is still read, in order to
+     * report the same errors as
+     * {@link #readNamedPMFProperties(URL,String,DocumentBuilderFactory)},
+     * in particular a duplicate requested name.
+     * @param url URL of a JDO configuration file compliant with javax/jdo/jdoconfig.xsd.
+     * @param requestedPMFName The name of the requested
+     *   persistence unit (allows for fail-fast).
+     * @return a Map&lt;String,Map&gt; holding the requested persistence unit
+     *   configuration if found; for the anonymous persistence unit, the
+     *   value of the String key is the empty string, "".
+     * @since 3.2
+     */
+    protected static Map<String,Map<Object,Object>> readRequestedPMFProperties(
+            URL url,
+            String requestedPMFName) {
+        return readRequestedPMFPropertiesForNames(url,
+            Collections.singleton(requestedPMFName));
+    }
+
+    /**
+     * Reads a JDO configuration file with a streaming parser and returns
+     * the properties of the requested persistence-manager-factory elements
+     * only, so that several factories can be configured from a single
+     * pass over the file. The checks for duplicate names and properties
+     * are applied to each requested name.
+     * @param url URL of a JDO configuration file compliant with javax/jdo/jdoconfig.xsd.
+     * @param requestedPMFNames The names of the requested persistence units.
+     * @return a Map&lt;String,Map&gt; holding the requested persistence unit
+     *   configurations found; for the anonymous persistence unit, the
+     *   value of the String key is the empty string, "".
+     * @since 3.2
+     */
+    protected static Map<String,Map<Object,Object>> readRequestedPMFPropertiesForNames(
+            URL url,
+            Collection<String> requestedPMFNames) {
+        Collection<String> requestedNames = trimPMFNames(requestedPMFNames);
+
+        Map<String,Map<Object,Object>>
+                propertiesByName = new HashMap<String,Map<Object,Object>>();
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+            in = openStream(url);
+            reader = getXMLInputFactory().createXMLStreamReader(in);
+
+            boolean rootFound = false;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                rootFound = true;
+                if (!ELEMENT_PERSISTENCE_MANAGER_FACTORY.equals(
+                        getQualifiedName(reader.getPrefix(),
+                            reader.getLocalName()))) {
+                    continue;
+                }
+
+                Properties pmfPropertiesFromAttributes
+                    = readPropertiesFromPMFElementAttributes(reader);
+
+                Properties pmfPropertiesFromElements
+                    = readPropertiesFromPMFSubelements(reader, url);
+
+                String pmfName = getPMFName(pmfPropertiesFromAttributes,
+                    pmfPropertiesFromElements, url);
+                if (!requestedNames.contains(pmfName)) {
+                    continue;
+                }
+                Properties pmfProps = mergePMFProperties(pmfName,
+                    pmfName, pmfPropertiesFromAttributes,
+                    pmfPropertiesFromElements, url);
+
+                // check for duplicate requested PMF name
+                if (propertiesByName.containsKey(pmfName)) {
+                    throw new JDOFatalUserException(msg.msg(
+                            "EXC_DuplicateRequestedNamedPMFFoundInSameConfig",
+                        pmfName,
+                        url.toExternalForm()));
+                }
+                propertiesByName.put(pmfName, pmfProps);
+            }
+            if (!rootFound) {
+                throw new JDOFatalUserException(
+                    msg.msg("EXC_InvalidJDOConfigNoRoot", url.toExternalForm())
+                );
+            }
+            return propertiesByName;
+        }
+        catch (IOException ioe) {
+            throw new JDOFatalUserException(
+                msg.msg("EXC_GetPMFIOExceptionRsrc", url.toString()),
+                ioe); //NOI18N
+        }
+        catch (XMLStreamException e) {
+            Location location = e.getLocation();
+            throw new JDOFatalUserException(
+                msg.msg(
+                    "EXC_SAXParseException",
+                    url.toExternalForm(),
+                    new Integer(location == null ? -1 : location.getLineNumber()),
+                    new Integer(location == null ? -1 : location.getColumnNumber())),
+                e);
+        }
+        finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                }
+                catch (XMLStreamException e) { /* gulp */ }
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException ioe) { /* gulp */ }
+            }
+        }
+    }
+
+    /**
+     * Reads the attributes of the persistence-manager-factory element at
+     * the current position of the reader.
+     * @param reader the reader positioned at the start of the element
+     * @return the properties given as attributes
+     * @since 3.2
+     */
+    protected static Properties readPropertiesFromPMFElementAttributes(
+        XMLStreamReader reader) {
+        Properties p = new Properties();
+        for(int i = 0; i < reader.getAttributeCount(); i++) {
+            String attName = getQualifiedName(
+                reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+            String attValue = reader.getAttributeValue(i).trim();
+
+            String jdoPropertyName =
+                (String) ATTRIBUTE_PROPERTY_XREF.get(attName);
+
+            p.put(
+                jdoPropertyName != null
+                    ? jdoPropertyName
+                    : attName,
+                attValue);
+        }
+        return p;
+    }
+
+    /**
+     * Reads the subelements of the persistence-manager-factory element at
+     * the current position of the reader. On return, the reader is
+     * positioned at the end of the element.
+     * @param reader the reader positioned at the start of the element
+     * @param url URL of the JDO configuration file
+     * @return the properties given as subelements
+     * @throws XMLStreamException if the file cannot be parsed
+     * @since 3.2
+     */
+    protected static Properties readPropertiesFromPMFSubelements(
+        XMLStreamReader reader, URL url) throws XMLStreamException {
+        Properties p = new Properties();
+        int depth = 0;
+        while (depth >= 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (depth++ > 0) {
+                // only direct children of the PMF element are of interest
+                continue;
+            }
+
+            String elementName = getQualifiedName(
+                reader.getPrefix(), reader.getLocalName());
+            if (ELEMENT_PROPERTY.equalsIgnoreCase(elementName)) {
+                // <property name="..." value="..."/>
+
+                // get the "name" attribute's value (required)
+                String name = reader.getAttributeValue(
+                    null, PROPERTY_ATTRIBUTE_NAME);
+                if (name == null) {
+                    throw new JDOFatalUserException(
+                        msg.msg("EXC_PropertyElementHasNoNameAttribute", url));
+                }
+                name = name.trim();
+                if ("".equals(name)) {
+                    throw new JDOFatalUserException(
+                        msg.msg(
+                            "EXC_PropertyElementNameAttributeHasNoValue",
+                            name,
+                            url));
+                }
+                String jdoPropertyName =
+                    (String) ATTRIBUTE_PROPERTY_XREF.get(name);
+                
+                String propertyName = jdoPropertyName != null
+                        ? jdoPropertyName
+                        : name;
+
+                if (p.containsKey(propertyName)) {
+                    throw new JDOFatalUserException(
+                        msg.msg(
+                            "EXC_DuplicatePropertyNameGivenInPropertyElement",
+                            propertyName,
+                            url));
+                }
+
+                // get the "value" attribute's value (optional)
+                String value = reader.getAttributeValue(
+                    null, PROPERTY_ATTRIBUTE_VALUE);
+                if (value == null) {
+                    // rejected as by the DOM reader
+                    throw new JDOFatalUserException(
+                        msg.msg("EXC_SAXException", url.toExternalForm()));
+                }
+                p.put(propertyName, value.trim());
+            }
+            else if (ELEMENT_INSTANCE_LIFECYCLE_LISTENER.equals(elementName)) {
+                // <instance-lifecycle-listener listener="..." classes="..."/>
+
+                // get the "listener" attribute's value
+                String listener = reader.getAttributeValue(
+                    null, INSTANCE_LIFECYCLE_LISTENER_ATTRIBUTE_LISTENER);
+                if (listener == null) {
+                    throw new JDOFatalUserException(
+                        msg.msg(
+                            "EXC_MissingListenerAttribute",
+                            url));
+                }
+                listener = listener.trim();
+                if ("".equals(listener)) {
+                    throw new JDOFatalUserException(
+                        msg.msg(
+                            "EXC_MissingListenerAttributeValue",
+                            url));
+                }
+
+                // listener properties are of the form
+                // "javax.jdo.option.InstanceLifecycleListener." + listener
+                listener =
+                    PROPERTY_PREFIX_INSTANCE_LIFECYCLE_LISTENER + listener;
+
+                // get the "classes" attribute's value (optional)
+                String value = reader.getAttributeValue(
+                    null, INSTANCE_LIFECYCLE_LISTENER_ATTRIBUTE_CLASSES);
+                p.put(listener, value == null ? "" : value.trim());
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Return the qualified name of an element or attribute as reported by
+     * the DOM reader.
+     * @param prefix the namespace prefix, or null or empty if none
+     * @param localName the local name
+     * @return the qualified name
+     */
+    private static String getQualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0
+            ? localName
+            : prefix + ":" + localName;
+    }
+
     protected static Properties readPropertiesFromPMFElementAttributes(
         Node pmfElement) {
         Properties p = new Properties();
@@ -1960,31 +3438,6 @@ public class JDOHelper implements Constants {
         }
     }
 
-    /** Invoke the method.
-     * Perform this operation in a doPrivileged block.
-     */
-    private static Object invoke(final Method method,
-            final Object instance, final Object[] parameters) 
-                throws IllegalAccessException, InvocationTargetException {
-        try {
-            return (Object) AccessController.doPrivileged(
-                new PrivilegedExceptionAction<Object>() {
-                    public Object run() 
-                        throws IllegalAccessException, 
-                            InvocationTargetException {
-                        return method.invoke (instance, parameters);
-                    }
-                }
-            );
-        } catch (PrivilegedActionException ex) {
-            Exception cause = (Exception)ex.getException();
-            if (cause instanceof IllegalAccessException)
-                throw (IllegalAccessException)cause;
-            else //if (cause instanceof InvocationTargetException)
-                throw (InvocationTargetException)cause;
-        }
-    }
-
     /**
      * Get resources of the resource loader. 
      * Perform this operation in a doPrivileged block.
@@ -2010,6 +3463,51 @@ public class JDOHelper implements Constants {
         }
     }
 
+    /**
+     * Invoke the getPersistenceManagerFactory method of the implementation.
+     * If the overrides parameter is not null, the handle is for the method
+     * with Map overrides, Map properties parameters; else it is for the
+     * method with Map properties parameter.
+     * Perform this operation in a doPrivileged block, so that the
+     * implementation runs with the privileges of this class.
+     * @param handle the handle of the method
+     * @param overrides a Map of overrides, or null
+     * @param properties a Map of properties
+     * @return the result of the method
+     * @throws Throwable the exception thrown by the method
+     */
+    private static Object invoke(final MethodHandle handle,
+            final Map<?, ?> overrides, final Map<?, ?> properties)
+                throws Throwable {
+        try {
+            return AccessController.doPrivileged(
+                new PrivilegedExceptionAction<Object>() {
+                    public Object run() throws Exception {
+                        try {
+                            if (overrides != null) {
+                                // use getPersistenceManagerFactory(
+                                // Map overrides, Map props)
+                                return (Object) handle.invokeExact(
+                                    (Map) overrides, (Map) properties);
+                            }
+                            // use getPersistenceManagerFactory(Map props)
+                            return (Object) handle.invokeExact(
+                                (Map) properties);
+                        } catch (Exception e) {
+                            throw e;
+                        } catch (Error e) {
+                            throw e;
+                        } catch (Throwable t) {
+                            throw new UndeclaredThrowableException(t);
+                        }
+                    }
+                }
+            );
+        } catch (PrivilegedActionException ex) {
+            throw ex.getException();
+        }
+    }
+
     /** 
      * Get the named class.
      * Perform this operation in a doPrivileged block.
@@ -2036,6 +3534,44 @@ public class JDOHelper implements Constants {
         }
     }
 
+    /** Get the last-modified time of the resource at the url.
+     * Only <code>file:</code> URLs and entries of jar files given by
+     * <code>jar:file:</code> URLs are checked, using the time of the file
+     * or jar file; resources of any other protocol are treated as
+     * immutable and get 0, so that no connection is opened to check them.
+     * Perform this operation in a doPrivileged block.
+     * 
+     * @param url the URL of the resource
+     * @return the last-modified time, 0 if the resource is treated as
+     * immutable, or -1 if the resource cannot be accessed
+     */
+    static long getLastModified(final URL url) {
+        return AccessController.doPrivileged(
+            new PrivilegedAction<Long>() {
+                public Long run() {
+                    try {
+                        URL fileURL = url;
+                        if ("jar".equals(url.getProtocol())) {
+                            // jar:<jar file url>!/<entry>
+                            String spec = url.getPath();
+                            int separator = spec.indexOf("!/"); //NOI18N
+                            if (separator == -1) {
+                                return 0L;
+                            }
+                            fileURL = new URL(spec.substring(0, separator));
+                        }
+                        if (!"file".equals(fileURL.getProtocol())) {
+                            return 0L;
+                        }
+                        return new File(fileURL.toURI()).lastModified();
+                    } catch (Exception ex) {
+                        return -1L;
+                    }
+                }
+            }
+        );
+    }
+
     /** Open an input stream on the url.
      * Perform this operation in a doPrivileged block.
      * 
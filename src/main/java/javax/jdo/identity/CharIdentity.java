@@ -98,6 +98,36 @@ public class CharIdentity extends SingleFieldIdentity {
         return String.valueOf(key);
     }
 
+    /** Append the String form of the key, as returned by 
+     * <code>toString</code>, to the output without creating a String.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        return out.append(key);
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the key, which must be exactly one character, without
+     * creating a String from the range.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @throws IllegalArgumentException if the range is not one character
+     * @since 3.2
+     */
+    public static CharIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        if (end - start != 1) 
+            throw new IllegalArgumentException(
+                msg.msg("EXC_StringWrongLength")); //NOI18N
+        return new CharIdentity(pcClass, s.charAt(start));
+    }
+
     /** Determine if the other object represents the same object id.
      * @param obj the other object
      * @return true if both objects represent the same object id
@@ -0,0 +1,611 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * IdentityCodec.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.jdo.JDOUserException;
+
+import javax.jdo.spi.I18NHelper;
+
+/** This class encodes single field identities in a compact binary form,
+ * as an alternative to their <code>Externalizable</code> form for 
+ * shipping many identities at once.
+ * <P>The name of each target class is written once per encoded stream 
+ * and referred to by number afterwards. Integral keys are written as
+ * variable-length integers, the keys of <code>UUIDIdentity</code> and
+ * <code>LongPairIdentity</code> instances as two fixed-width longs,
+ * <code>String</code> keys as UTF-8, and only 
+ * the keys of <code>ObjectIdentity</code> instances are written with
+ * Java serialization.
+ * <P>An {@link Encoder} writes identities to a growable buffer and a
+ * {@link Decoder} reads them back from a <code>ByteBuffer</code>,
+ * loading the target classes with a given class loader. Subclasses of 
+ * the identity classes of this package are not supported.
+ * <P>Decoding the key of an <code>ObjectIdentity</code> runs Java 
+ * deserialization on the encoded bytes, so encoded forms from sources
+ * that are not trusted must be decoded with a key class filter, which
+ * accepts the names of the classes that may be deserialized.
+ * @version 3.2
+ * @since 3.2
+ */
+public final class IdentityCodec {
+
+    /** The Internationalization message helper.
+     */
+    private final static I18NHelper msg = 
+        I18NHelper.getInstance ("javax.jdo.Bundle"); //NOI18N
+
+    /** The type tag of ByteIdentity. */
+    static final byte TYPE_BYTE = 1;
+    /** The type tag of CharIdentity. */
+    static final byte TYPE_CHAR = 2;
+    /** The type tag of ShortIdentity. */
+    static final byte TYPE_SHORT = 3;
+    /** The type tag of IntIdentity. */
+    static final byte TYPE_INT = 4;
+    /** The type tag of LongIdentity. */
+    static final byte TYPE_LONG = 5;
+    /** The type tag of StringIdentity. */
+    static final byte TYPE_STRING = 6;
+    /** The type tag of ObjectIdentity. */
+    static final byte TYPE_OBJECT = 7;
+    /** The type tag of UUIDIdentity. */
+    static final byte TYPE_UUID = 8;
+    /** The type tag of LongPairIdentity. */
+    static final byte TYPE_LONG_PAIR = 9;
+
+    /** Not instantiable.
+     */
+    private IdentityCodec() {
+    }
+
+    /** Encode the identities.
+     * @param identities the identities
+     * @return the encoded form
+     */
+    public static byte[] encode(
+            Collection<? extends SingleFieldIdentity> identities) {
+        Encoder encoder = new Encoder();
+        for (SingleFieldIdentity identity : identities) {
+            encoder.write(identity);
+        }
+        return encoder.toByteArray();
+    }
+
+    /** Decode all identities remaining in the buffer.
+     * @param buffer the encoded form
+     * @param loader the class loader for the target classes
+     * @return the identities
+     */
+    public static List<SingleFieldIdentity> decode(ByteBuffer buffer,
+            ClassLoader loader) {
+        return decode(buffer, loader, null);
+    }
+
+    /** Decode all identities remaining in the buffer, deserializing only
+     * the key classes accepted by the filter.
+     * @param buffer the encoded form
+     * @param loader the class loader for the target classes
+     * @param keyClassFilter the filter of the names of the classes that
+     * may be deserialized for ObjectIdentity keys, or null to accept all
+     * @return the identities
+     */
+    public static List<SingleFieldIdentity> decode(ByteBuffer buffer,
+            ClassLoader loader, Predicate<String> keyClassFilter) {
+        Decoder decoder = new Decoder(buffer, loader, keyClassFilter);
+        List<SingleFieldIdentity> result = new ArrayList<SingleFieldIdentity>();
+        while (decoder.hasRemaining()) {
+            result.add(decoder.read());
+        }
+        return result;
+    }
+
+    /** This class writes the encoded form of identities. It is not
+     * thread-safe.
+     */
+    public static final class Encoder {
+
+        /** The numbers of the target class names written so far. */
+        private final Map<String, Integer> classNumbers = 
+            new HashMap<String, Integer>();
+
+        /** The buffer. */
+        private byte[] buffer = new byte[256];
+
+        /** The number of bytes written. */
+        private int size;
+
+        /** Write an identity.
+         * @param identity the identity
+         * @throws JDOUserException if the identity class is not supported
+         */
+        public void write(SingleFieldIdentity identity) {
+            Class<?> identityClass = identity.getClass();
+            if (identityClass == LongIdentity.class) {
+                writeHeader(TYPE_LONG, identity);
+                writeVarLong(zigZag(((LongIdentity)identity).getKey()));
+            } else if (identityClass == IntIdentity.class) {
+                writeHeader(TYPE_INT, identity);
+                writeVarLong(zigZag(((IntIdentity)identity).getKey()));
+            } else if (identityClass == StringIdentity.class) {
+                writeHeader(TYPE_STRING, identity);
+                writeString(((StringIdentity)identity).getKey());
+            } else if (identityClass == ShortIdentity.class) {
+                writeHeader(TYPE_SHORT, identity);
+                writeVarLong(zigZag(((ShortIdentity)identity).getKey()));
+            } else if (identityClass == CharIdentity.class) {
+                writeHeader(TYPE_CHAR, identity);
+                writeVarLong(((CharIdentity)identity).getKey());
+            } else if (identityClass == ByteIdentity.class) {
+                writeHeader(TYPE_BYTE, identity);
+                writeByte(((ByteIdentity)identity).getKey());
+            } else if (identityClass == UUIDIdentity.class) {
+                UUIDIdentity uuidIdentity = (UUIDIdentity)identity;
+                writeHeader(TYPE_UUID, identity);
+                writeLong(uuidIdentity.getMostSignificantBits());
+                writeLong(uuidIdentity.getLeastSignificantBits());
+            } else if (identityClass == LongPairIdentity.class) {
+                LongPairIdentity pairIdentity = (LongPairIdentity)identity;
+                writeHeader(TYPE_LONG_PAIR, identity);
+                writeLong(pairIdentity.getFirstKey());
+                writeLong(pairIdentity.getSecondKey());
+            } else if (identityClass == ObjectIdentity.class) {
+                writeHeader(TYPE_OBJECT, identity);
+                writeBytes(serialize(((ObjectIdentity)identity).getKey()));
+            } else {
+                throw new JDOUserException(msg.msg(
+                    "EXC_IdentityCodecUnsupportedType", //NOI18N
+                    identityClass.getName()));
+            }
+        }
+
+        /** Return the number of bytes written.
+         * @return the number of bytes written
+         */
+        public int size() {
+            return size;
+        }
+
+        /** Return a copy of the bytes written.
+         * @return the bytes written
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        /** Write the bytes written to a stream.
+         * @param out the stream
+         * @throws IOException if the stream cannot be written
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, size);
+        }
+
+        /** Write the type tag and the reference to the target class name,
+         * followed by the name itself the first time.
+         * @param type the type tag
+         * @param identity the identity
+         */
+        private void writeHeader(byte type, SingleFieldIdentity identity) {
+            writeByte(type);
+            String className = identity.getTargetClassName();
+            Integer number = classNumbers.get(className);
+            if (number != null) {
+                writeVarLong(number.intValue());
+            } else {
+                int newNumber = classNumbers.size();
+                classNumbers.put(className, Integer.valueOf(newNumber));
+                writeVarLong(newNumber);
+                writeString(className);
+            }
+        }
+
+        /** Write a String as its UTF-8 length and bytes.
+         * @param s the String
+         */
+        private void writeString(String s) {
+            writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** Write bytes preceded by their length.
+         * @param bytes the bytes
+         */
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /** Write an unsigned variable-length integer, seven bits per byte
+         * with the high bit set on all but the last byte.
+         * @param value the value
+         */
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte)value;
+        }
+
+        /** Write a long as eight bytes, most significant first.
+         * @param value the value
+         */
+        private void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte)(value >>> shift);
+            }
+        }
+
+        /** Write a byte.
+         * @param value the byte
+         */
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[size++] = value;
+        }
+
+        /** Grow the buffer to hold the given number of additional bytes.
+         * @param additional the number of additional bytes
+         */
+        private void ensureCapacity(int additional) {
+            if (size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, 
+                    Math.max(buffer.length * 2, size + additional));
+            }
+        }
+    }
+
+    /** This class reads identities from their encoded form. It is not
+     * thread-safe.
+     */
+    public static final class Decoder {
+
+        /** The encoded form. */
+        private final ByteBuffer buffer;
+
+        /** The class loader for the target classes. */
+        private final ClassLoader loader;
+
+        /** The filter of the key classes to deserialize, or null. */
+        private final Predicate<String> keyClassFilter;
+
+        /** The target classes read so far, by number. */
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+        /** Construct a decoder reading from the current position of the
+         * buffer. The keys of ObjectIdentity instances are deserialized
+         * without restriction, so the encoded form must be trusted.
+         * @param buffer the encoded form
+         * @param loader the class loader for the target classes
+         */
+        public Decoder(ByteBuffer buffer, ClassLoader loader) {
+            this(buffer, loader, null);
+        }
+
+        /** Construct a decoder reading from the current position of the
+         * buffer, deserializing only the key classes accepted by the 
+         * filter.
+         * @param buffer the encoded form
+         * @param loader the class loader for the target classes
+         * @param keyClassFilter the filter of the names of the classes that
+         * may be deserialized for ObjectIdentity keys, including the 
+         * classes of their fields and the element classes of arrays, or
+         * null to accept all
+         */
+        public Decoder(ByteBuffer buffer, ClassLoader loader, 
+                Predicate<String> keyClassFilter) {
+            this.buffer = buffer;
+            this.loader = loader;
+            this.keyClassFilter = keyClassFilter;
+        }
+
+        /** Return whether there are more identities.
+         * @return true if the buffer has remaining bytes
+         */
+        public boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+
+        /** Read the next identity.
+         * @return the identity
+         * @throws JDOUserException if the encoded form is corrupt or
+         * a target class cannot be loaded
+         */
+        public SingleFieldIdentity read() {
+            try {
+                byte type = buffer.get();
+                Class<?> pcClass = readClass();
+                switch (type) {
+                case TYPE_LONG:
+                    return new LongIdentity(pcClass, unZigZag(readVarLong()));
+                case TYPE_INT:
+                    return new IntIdentity(pcClass, (int)readVarLong(
+                        Integer.MIN_VALUE, Integer.MAX_VALUE, true));
+                case TYPE_STRING:
+                    return new StringIdentity(pcClass, readString());
+                case TYPE_SHORT:
+                    return new ShortIdentity(pcClass, (short)readVarLong(
+                        Short.MIN_VALUE, Short.MAX_VALUE, true));
+                case TYPE_CHAR:
+                    return new CharIdentity(pcClass, (char)readVarLong(
+                        Character.MIN_VALUE, Character.MAX_VALUE, false));
+                case TYPE_BYTE:
+                    return new ByteIdentity(pcClass, buffer.get());
+                case TYPE_UUID:
+                    return new UUIDIdentity(pcClass, readLong(), readLong());
+                case TYPE_LONG_PAIR:
+                    return new LongPairIdentity(pcClass, readLong(), 
+                        readLong());
+                case TYPE_OBJECT:
+                    return new ObjectIdentity(pcClass, pcClass.getName(),
+                        deserialize(readBytes(), loader, keyClassFilter));
+                default:
+                    throw corrupt(null);
+                }
+            } catch (BufferUnderflowException ex) {
+                throw corrupt(ex);
+            }
+        }
+
+        /** Read the reference to a target class, and its name the first
+         * time, and return the class.
+         * @return the class
+         */
+        private Class<?> readClass() {
+            long number = readVarLong();
+            if (number < 0) {
+                throw corrupt(null);
+            } else if (number < classes.size()) {
+                return classes.get((int)number);
+            } else if (number != classes.size()) {
+                throw corrupt(null);
+            }
+            String className = readString();
+            try {
+                Class<?> pcClass = Class.forName(className, false, loader);
+                classes.add(pcClass);
+                return pcClass;
+            } catch (ClassNotFoundException ex) {
+                throw new JDOUserException(msg.msg(
+                    "EXC_IdentityCodecClassNotFound", className), ex); //NOI18N
+            }
+        }
+
+        /** Read a long written as eight bytes, most significant first,
+         * regardless of the byte order of the buffer.
+         * @return the value
+         */
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; ++i) {
+                value = (value << 8) | (buffer.get() & 0xFF);
+            }
+            return value;
+        }
+
+        /** Read a String as its UTF-8 length and bytes.
+         * @return the String
+         */
+        private String readString() {
+            int length = readLength();
+            String result;
+            if (buffer.hasArray()) {
+                result = new String(buffer.array(), 
+                    buffer.arrayOffset() + buffer.position(), length, 
+                    StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                result = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return result;
+        }
+
+        /** Read bytes preceded by their length.
+         * @return the bytes
+         */
+        private byte[] readBytes() {
+            byte[] bytes = new byte[readLength()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        /** Read a length and check it against the remaining bytes.
+         * @return the length
+         */
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > buffer.remaining()) {
+                throw corrupt(null);
+            }
+            return (int)length;
+        }
+
+        /** Read an unsigned variable-length integer. Values with the
+         * highest bit set are returned as negative longs.
+         * @return the value
+         */
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                result |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw corrupt(null);
+        }
+
+        /** Read a variable-length integer and check it against the range
+         * of the type it was written for.
+         * @param min the smallest value of the type
+         * @param max the largest value of the type
+         * @param signed whether the value was written zigzag-encoded
+         * @return the value
+         */
+        private long readVarLong(long min, long max, boolean signed) {
+            long value = readVarLong();
+            if (signed) {
+                value = unZigZag(value);
+            } else if (value < 0) {
+                throw corrupt(null);
+            }
+            if (value < min || value > max) {
+                throw corrupt(null);
+            }
+            return value;
+        }
+
+        /** Create the exception for a corrupt encoded form.
+         * @param cause the cause, or null
+         * @return the exception
+         */
+        private JDOUserException corrupt(Throwable cause) {
+            return new JDOUserException(msg.msg(
+                "EXC_IdentityCodecCorrupt", //NOI18N
+                Integer.valueOf(buffer.position())), cause);
+        }
+    }
+
+    /** Map a signed value to an unsigned value with small magnitudes
+     * mapped to small values.
+     * @param value the signed value
+     * @return the unsigned value
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /** Reverse {@link #zigZag}.
+     * @param value the unsigned value
+     * @return the signed value
+     */
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Serialize the key of an ObjectIdentity.
+     * @param key the key
+     * @return the serialized form
+     */
+    private static byte[] serialize(Object key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(key);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new JDOUserException(msg.msg(
+                "EXC_IdentityCodecKeySerialization", //NOI18N
+                key.getClass().getName()), ex);
+        }
+    }
+
+    /** Deserialize the key of an ObjectIdentity.
+     * @param bytes the serialized form
+     * @param loader the class loader for the key class
+     * @param keyClassFilter the filter of the names of the classes that
+     * may be deserialized, or null to accept all
+     * @return the key
+     */
+    private static Object deserialize(byte[] bytes, final ClassLoader loader,
+            final Predicate<String> keyClassFilter) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(bytes)) {
+                protected Class<?> resolveClass(ObjectStreamClass desc)
+                        throws IOException, ClassNotFoundException {
+                    checkAccepted(desc.getName());
+                    try {
+                        return Class.forName(desc.getName(), false, loader);
+                    } catch (ClassNotFoundException ex) {
+                        return super.resolveClass(desc);
+                    }
+                }
+                protected Class<?> resolveProxyClass(String[] interfaces)
+                        throws IOException, ClassNotFoundException {
+                    for (String name : interfaces) {
+                        checkAccepted(name);
+                    }
+                    return super.resolveProxyClass(interfaces);
+                }
+                private void checkAccepted(String name) 
+                        throws InvalidClassException {
+                    // arrays are filtered by their element class, and
+                    // arrays of primitives are always accepted
+                    int dimensions = 0;
+                    while (name.charAt(dimensions) == '[') {
+                        ++dimensions;
+                    }
+                    if (dimensions > 0) {
+                        if (name.charAt(dimensions) != 'L') {
+                            return;
+                        }
+                        name = name.substring(dimensions + 1, 
+                            name.length() - 1);
+                    }
+                    if (keyClassFilter != null 
+                            && !keyClassFilter.test(name)) {
+                        throw new InvalidClassException(name, 
+                            msg.msg("EXC_IdentityCodecKeyClassRejected")); //NOI18N
+                    }
+                }
+            };
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception ex) {
+            throw new JDOUserException(msg.msg(
+                "EXC_IdentityCodecKeyDeserialization"), ex); //NOI18N
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * IdentityInterner.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** This class hands out canonical instances of single field identity
+ * classes. Equal identities obtained from it are usually the same
+ * instance, which saves allocation when the same ids are built
+ * repeatedly and lets <code>equals</code> succeed on the reference
+ * comparison.
+ * <P>The canonical instances are kept in a bounded table per target
+ * class, held by the class itself so that the table does not prevent
+ * the class from being garbage collected. Each table has
+ * {@link #CAPACITY} slots; an identity whose slot is taken by a
+ * different identity replaces it. Interning is therefore a cache, not a
+ * guarantee: callers must still use <code>equals</code> to compare
+ * identities.
+ * @version 3.2
+ * @since 3.2
+ */
+public final class IdentityInterner {
+
+    /** The number of slots of the table per target class.
+     */
+    public static final int CAPACITY = 1024;
+
+    /** The tables of canonical instances per target class.
+     */
+    private static final ClassValue<AtomicReferenceArray<SingleFieldIdentity>>
+            tables = new ClassValue<AtomicReferenceArray<SingleFieldIdentity>>() {
+                protected AtomicReferenceArray<SingleFieldIdentity> computeValue(
+                        Class<?> pcClass) {
+                    return new AtomicReferenceArray<SingleFieldIdentity>(CAPACITY);
+                }
+            };
+
+    /** Not instantiable.
+     */
+    private IdentityInterner() {
+    }
+
+    /** Return the canonical identity with a long key.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the canonical identity
+     */
+    public static LongIdentity of(Class pcClass, long key) {
+        AtomicReferenceArray<SingleFieldIdentity> table = tables.get(pcClass);
+        int slot = slot(pcClass.getName().hashCode() ^ (int)key);
+        SingleFieldIdentity cached = table.get(slot);
+        if (cached instanceof LongIdentity 
+                && ((LongIdentity)cached).getKey() == key) {
+            return (LongIdentity)cached;
+        }
+        LongIdentity result = new LongIdentity(pcClass, key);
+        table.lazySet(slot, result);
+        return result;
+    }
+
+    /** Return the canonical identity with an int key.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the canonical identity
+     */
+    public static IntIdentity of(Class pcClass, int key) {
+        AtomicReferenceArray<SingleFieldIdentity> table = tables.get(pcClass);
+        int slot = slot(pcClass.getName().hashCode() ^ key);
+        SingleFieldIdentity cached = table.get(slot);
+        if (cached instanceof IntIdentity 
+                && ((IntIdentity)cached).getKey() == key) {
+            return (IntIdentity)cached;
+        }
+        IntIdentity result = new IntIdentity(pcClass, key);
+        table.lazySet(slot, result);
+        return result;
+    }
+
+    /** Return the canonical identity with a String key.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the canonical identity
+     */
+    public static StringIdentity of(Class pcClass, String key) {
+        if (key == null) {
+            // let the constructor report the null key
+            return new StringIdentity(pcClass, key);
+        }
+        AtomicReferenceArray<SingleFieldIdentity> table = tables.get(pcClass);
+        int slot = slot(pcClass.getName().hashCode() ^ key.hashCode());
+        SingleFieldIdentity cached = table.get(slot);
+        if (cached instanceof StringIdentity 
+                && ((StringIdentity)cached).getKey().equals(key)) {
+            return (StringIdentity)cached;
+        }
+        StringIdentity result = new StringIdentity(pcClass, key);
+        table.lazySet(slot, result);
+        return result;
+    }
+
+    /** Return the canonical instance equal to the given identity. If
+     * there is none, the given identity becomes the canonical instance.
+     * Identities restored from serialization have no target class and
+     * are returned unchanged.
+     * @param identity the identity
+     * @param <T> the type of the identity
+     * @return the canonical identity
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends SingleFieldIdentity> T intern(T identity) {
+        Class pcClass = identity.getTargetClass();
+        if (pcClass == null) {
+            return identity;
+        }
+        AtomicReferenceArray<SingleFieldIdentity> table = tables.get(pcClass);
+        int slot = slot(identity.hashCode());
+        SingleFieldIdentity cached = table.get(slot);
+        if (cached != null && cached.equals(identity)) {
+            return (T)cached;
+        }
+        table.lazySet(slot, identity);
+        return identity;
+    }
+
+    /** Discard the canonical instances for the target class.
+     * @param pcClass the target class
+     */
+    public static void clear(Class pcClass) {
+        tables.remove(pcClass);
+    }
+
+    /** Return the slot for a hash code.
+     * @param hash the hash code of the identity
+     * @return the slot
+     */
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+    }
+}
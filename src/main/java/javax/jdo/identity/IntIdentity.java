@@ -68,6 +68,17 @@ public class IntIdentity extends SingleFieldIdentity {
         construct(Integer.parseInt(str));
     }
 
+    /** Constructor with class, class name and key.
+     * @param pcClass the class, or null if not known
+     * @param pcClassName the class name
+     * @param key the key
+     * @since 3.2
+     */
+    IntIdentity (Class pcClass, String pcClassName, int key) {
+        super(pcClass, pcClassName);
+        construct(key);
+    }
+
     /** Constructor only for Externalizable.
      */
     public IntIdentity () {
@@ -87,6 +98,34 @@ public class IntIdentity extends SingleFieldIdentity {
         return Integer.toString(key);
     }
 
+    /** Append the String form of the key, as returned by 
+     * <code>toString</code>, to the output without creating a String.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        appendLong(out, key);
+        return out;
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the key, without creating a String from the range.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @throws NumberFormatException if the range is not a valid key
+     * @since 3.2
+     */
+    public static IntIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        return new IntIdentity(pcClass, 
+            (int)parseLong(s, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
     /** Determine if the other object represents the same object id.
      * @param obj the other object
      * @return true if both objects represent the same object id
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * LongPairIdentity.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import javax.jdo.spi.I18NHelper;
+
+/** This class is for identity with a composite key of two long fields.
+ * The String form of the key is the two longs separated by a colon, 
+ * like <code>"17:42"</code>.
+ * @version 3.2
+ * @since 3.2
+ */
+public class LongPairIdentity extends SingleFieldIdentity {
+
+    /** The Internationalization message helper.
+     */
+    private static I18NHelper msg = I18NHelper.getInstance ("javax.jdo.Bundle"); //NOI18N
+
+    /** The separator of the String form of the key.
+     */
+    private static final char SEPARATOR = ':'; //NOI18N
+
+    /** The first key.
+     */
+    private long first;
+
+    /** The second key.
+     */
+    private long second;
+
+    private void construct(long first, long second) {
+        this.first = first;
+        this.second = second;
+        hashCode = hashClassName() ^ (int)(first ^ (first >>> 32)) 
+            ^ 31 * (int)(second ^ (second >>> 32));
+    }
+
+    /** Constructor with class and keys.
+     * @param pcClass the target class
+     * @param first the first key
+     * @param second the second key
+     */
+    public LongPairIdentity (Class pcClass, long first, long second) {
+        super(pcClass);
+        construct(first, second);
+    }
+
+    /** Constructor with class and key. The String must be the String
+     * form of two longs separated by a colon.
+     * @param pcClass the target class
+     * @param str the key
+     */
+    public LongPairIdentity (Class pcClass, String str) {
+        super(pcClass);
+        assertKeyNotNull(str);
+        int end = str.length();
+        int index = indexOf(str, SEPARATOR, 0, end);
+        construct(parseLong(str, 0, index), parseLong(str, index + 1, end));
+    }
+
+    /** Constructor only for Externalizable.
+     */
+    public LongPairIdentity () {
+    }
+
+    /** Return the first key.
+     * @return the first key
+     */
+    public long getFirstKey () {
+        return first;
+    }
+
+    /** Return the second key.
+     * @return the second key
+     */
+    public long getSecondKey () {
+        return second;
+    }
+
+    /** Return the String form of the key.
+     * @return the String form of the key
+     */
+    public String toString () {
+        return Long.toString(first) + SEPARATOR + Long.toString(second);
+    }
+
+    /** Append the String form of the key, as returned by 
+     * <code>toString</code>, to the output without creating a String.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        appendLong(out, first);
+        out.append(SEPARATOR);
+        appendLong(out, second);
+        return out;
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the key, two longs separated by a colon, without creating
+     * a String from the range.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @throws IllegalArgumentException if the range is not a valid key
+     * @since 3.2
+     */
+    public static LongPairIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        int index = indexOf(s, SEPARATOR, start, end);
+        return new LongPairIdentity(pcClass, parseLong(s, start, index), 
+            parseLong(s, index + 1, end));
+    }
+
+    /** Return the index of the separator in a range of characters.
+     * @param s the characters
+     * @param separator the separator
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the index of the separator
+     * @throws IllegalArgumentException if there is no separator
+     */
+    private static int indexOf(CharSequence s, char separator, 
+            int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (s.charAt(i) == separator) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(msg.msg(
+            "EXC_LongPairIdentityNoSeparator", //NOI18N
+            s.subSequence(start, end)));
+    }
+
+    /** Determine if the other object represents the same object id.
+     * @param obj the other object
+     * @return true if both objects represent the same object id
+     */
+    public boolean equals (Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!super.equals (obj)) {
+            return false;
+        } else {
+            LongPairIdentity other = (LongPairIdentity) obj;
+            return first == other.first && second == other.second;
+        }
+    }
+
+    /** Determine the ordering of identity objects. Keys are ordered by
+     * the first key, then by the second key.
+     * @param o Other identity
+     * @return The relative ordering between the objects
+     */
+    public int compareTo(Object o) {
+        if (o instanceof LongPairIdentity) {
+            LongPairIdentity other = (LongPairIdentity)o;
+            int result = super.compare(other);
+            if (result == 0) {
+                result = Long.compare(first, other.first);
+                if (result == 0) {
+                    result = Long.compare(second, other.second);
+                }
+            }
+            return result;
+        }
+        else if (o == null) {
+            throw new ClassCastException("object is null");
+        }
+        throw new ClassCastException(this.getClass().getName() + " != " + o.getClass().getName());
+    }
+
+    /** Create the key as an Object, which is the String form of the key.
+     * @return the key as an Object
+     */
+    protected Object createKeyAsObject() {
+        return toString();
+    }
+
+    /** Write this object. Write the superclass first.
+     * @param out the output
+     */
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal (out);
+        out.writeLong(first);
+        out.writeLong(second);
+    }
+
+    /** Read this object. Read the superclass first.
+     * @param in the input
+     */
+    public void readExternal(ObjectInput in)
+		throws IOException, ClassNotFoundException {
+        super.readExternal (in);
+        first = in.readLong();
+        second = in.readLong();
+    }
+
+}
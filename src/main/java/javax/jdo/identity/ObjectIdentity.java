@@ -92,6 +92,19 @@ public class ObjectIdentity extends SingleFieldIdentity {
         hashCode = hashClassName() ^ keyAsObject.hashCode();
     }
 
+    /** Constructor with class, class name and key. The key is stored
+     * as given, even if it is a String.
+     * @param pcClass the class, or null if not known
+     * @param pcClassName the class name
+     * @param key the key
+     * @since 3.2
+     */
+    ObjectIdentity (Class pcClass, String pcClassName, Object key) {
+        super(pcClass, pcClassName);
+        setKeyAsObject(key);
+        hashCode = hashClassName() ^ keyAsObject.hashCode();
+    }
+
     /** Constructor only for Externalizable.
      */
     public ObjectIdentity () {
@@ -120,6 +133,38 @@ public class ObjectIdentity extends SingleFieldIdentity {
                 + keyAsObject.toString();
     }
 
+    /** Append the String form of the object id, as returned by 
+     * <code>toString</code>, to the output without concatenating the
+     * class name and the String form of the key.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    @Override
+    public Appendable appendTo(Appendable out) throws IOException {
+        return out.append(keyAsObject.getClass().getName())
+                .append(STRING_DELIMITER)
+                .append(keyAsObject.toString());
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the object id. The class name and the String form of the
+     * key are created from the range, because the key is constructed 
+     * from them.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @since 3.2
+     */
+    public static ObjectIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        return new ObjectIdentity(pcClass, 
+            s.subSequence(start, end).toString());
+    }
+
     /** Determine if the other object represents the same object id.
      * @param obj the other object
      * @return true if both objects represent the same object id
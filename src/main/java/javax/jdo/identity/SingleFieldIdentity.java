@@ -27,6 +27,10 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.jdo.JDOFatalInternalException;
 import javax.jdo.JDONullIdentityException;
 
@@ -54,6 +58,34 @@ public abstract class SingleFieldIdentity
      */
     private String targetClassName;
 
+    /** The ordinal of the name of the class of the target object, 0 if
+     * not yet computed, or -1 if the name has no ordinal. Equal class 
+     * names have equal ordinals.
+     */
+    transient private int targetClassNameOrdinal;
+
+    /** The maximum number of class names with an ordinal. 
+     */
+    private static final int MAX_CLASS_NAME_ORDINALS = 4096;
+
+    /** The ordinals of the class names, starting at 1. Only the names are
+     * kept, so classes and their class loaders are not retained, and at
+     * most MAX_CLASS_NAME_ORDINALS names are kept, so that identities 
+     * deserialized from untrusted input cannot grow the map without bound.
+     * The ordinals only tell whether two names are equal; they do not
+     * order the names. The first lookup for each identity costs a hash of
+     * the name and a map lookup, without locking, so the table pays off
+     * only when identities are compared repeatedly.
+     */
+    private static final ConcurrentMap<String, Integer> classNameOrdinals =
+        new ConcurrentHashMap<String, Integer>();
+
+    /** The last ordinal handed out. Ordinals lost to a racing thread that
+     * assigned the same name first count against MAX_CLASS_NAME_ORDINALS.
+     */
+    private static final AtomicInteger lastClassNameOrdinal =
+        new AtomicInteger();
+
     /** The hashCode.
      */
     protected int hashCode;
@@ -79,6 +111,56 @@ public abstract class SingleFieldIdentity
     public SingleFieldIdentity () {
     }
 
+    /** Constructor with target class and target class name, for 
+     * identities restored from a form that holds only the class name.
+     * @param pcClass the class of the target, or null if not known
+     * @param pcClassName the name of the class of the target
+     * @since 3.2
+     */
+    SingleFieldIdentity(Class pcClass, String pcClassName) {
+        targetClass = pcClass;
+        targetClassName = pcClassName;
+    }
+
+    /** Return the ordinal of the target class name, computing it on first
+     * use. Threads racing on the first use compute the same ordinal.
+     * @return the ordinal, or -1 if the name has no ordinal
+     */
+    private int getTargetClassNameOrdinal() {
+        int ordinal = targetClassNameOrdinal;
+        if (ordinal == 0) {
+            ordinal = (targetClassName == null) 
+                ? -1 : getClassNameOrdinal(targetClassName);
+            targetClassNameOrdinal = ordinal;
+        }
+        return ordinal;
+    }
+
+    /** Return the ordinal of a class name, assigning the next ordinal if 
+     * the name has none and the maximum number of names is not reached.
+     * @param className the class name
+     * @return the ordinal, or -1 if the name has no ordinal
+     */
+    private static int getClassNameOrdinal(String className) {
+        Integer ordinal = classNameOrdinals.get(className);
+        if (ordinal == null) {
+            // check first so that a full table is not counted further
+            if (lastClassNameOrdinal.get() >= MAX_CLASS_NAME_ORDINALS) {
+                return -1;
+            }
+            int next = lastClassNameOrdinal.incrementAndGet();
+            if (next > MAX_CLASS_NAME_ORDINALS) {
+                return -1;
+            }
+            ordinal = classNameOrdinals.putIfAbsent(className,
+                Integer.valueOf(next));
+            if (ordinal == null) {
+                return next;
+            }
+        }
+        return ordinal.intValue();
+    }
+
     /** Set the given key as the key for this instance. 
      * Compute the hash code for the instance.
      * @param key The key to use
@@ -117,19 +199,28 @@ public abstract class SingleFieldIdentity
         return targetClassName;
     }
 
-    /** Return the key as an Object. The method is synchronized to avoid
-     * race conditions in multi-threaded environments.
+    /** Return the key as an Object. The key is created lazily without
+     * locking: threads racing on the first call may each create a key,
+     * and any of them may be stored, which is harmless because the keys
+     * are equal and immutable.
      * @return the key as an Object.
      * @since 2.0
      */
-    public synchronized Object getKeyAsObject() {
-        if (keyAsObject == null) {
-            keyAsObject = createKeyAsObject();
+    public Object getKeyAsObject() {
+        // read the field once, so that a racing store cannot make
+        // this method return null
+        Object key = keyAsObject;
+        if (key == null) {
+            key = createKeyAsObject();
+            keyAsObject = key;
         }
-        return keyAsObject;
+        return key;
     }
     
-    /** Create the key as an Object.
+    /** Create the key as an Object. The method may be called more than
+     * once for an instance, so it must return equal objects, and the
+     * objects must be safe to publish without synchronization, like the
+     * primitive wrapper classes whose fields are final.
      * @return the key as an Object;
      * @since 2.0
      */
@@ -137,9 +228,38 @@ public abstract class SingleFieldIdentity
         throw new JDOFatalInternalException
                 (msg.msg("EXC_CreateKeyAsObjectMustNotBeCalled"));
     }
+
+    /** Append the String form of this identity, as returned by 
+     * <code>toString</code>, to the output. Subclasses append the key 
+     * without creating the String form.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        return out.append(toString());
+    }
+
+    /** Append the String form of this identity, as returned by 
+     * <code>toString</code>, to the StringBuilder.
+     * @param out the StringBuilder
+     * @return the StringBuilder
+     * @since 3.2
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        try {
+            appendTo((Appendable)out);
+        } catch (IOException ex) {
+            // a StringBuilder does not throw IOException
+            throw new JDOFatalInternalException(ex.toString(), ex);
+        }
+        return out;
+    }
     
-    /** Check the class and class name and object type. If restored
-     * from serialization, class will be null so compare class name.
+    /** Check the class and class name and object type. The class names
+     * are compared by their ordinals, which are computed on first use,
+     * also for instances restored from serialization.
      * @param obj the other object
      * @return true if the class or class name is the same
      */
@@ -152,6 +272,10 @@ public abstract class SingleFieldIdentity
             SingleFieldIdentity other = (SingleFieldIdentity) obj;
             if (targetClass != null && targetClass == other.targetClass)
                 return true;
+            int ordinal = getTargetClassNameOrdinal();
+            int otherOrdinal = other.getTargetClassNameOrdinal();
+            if (ordinal > 0 && otherOrdinal > 0)
+                return ordinal == otherOrdinal;
             return targetClassName.equals (other.targetClassName);
         }
     }
@@ -186,17 +310,158 @@ public abstract class SingleFieldIdentity
             throws IOException, ClassNotFoundException {
         targetClass = null;
         targetClassName = (String)in.readObject();
+        targetClassNameOrdinal = 0;
         hashCode = in.readInt();
     }
 
     /** Determine the ordering of identity objects. Only the class name
-     *  is compared. This method is only used by subclasses.
+     *  is compared. This method is only used by subclasses. Only equal
+     *  class names take the fast path, recognized by the same target
+     *  class or by equal ordinals; identities of different classes are
+     *  still ordered by <code>String.compareTo</code> of the names, and
+     *  the first ordinal lookup of each identity costs a hash and a map
+     *  lookup.
      * @param o Other identity
      * @return The relative ordering between the objects
      * @since 2.2
      */
     protected int compare(SingleFieldIdentity o) {
-            return targetClassName.compareTo(o.targetClassName);
+        if (targetClass != null && targetClass == o.targetClass)
+            return 0;
+        int ordinal = getTargetClassNameOrdinal();
+        if (ordinal > 0 && ordinal == o.getTargetClassNameOrdinal())
+            return 0;
+        return targetClassName.compareTo(o.targetClassName);
+    }
+
+    /** Append the decimal form of a long, as returned by 
+     * <code>Long.toString</code>, without creating a String.
+     * @param out the output
+     * @param value the value
+     * @throws IOException if the output cannot be written
+     */
+    static void appendLong(Appendable out, long value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder)out).append(value);
+            return;
+        }
+        // work with the negative value, which also holds Long.MIN_VALUE
+        if (value < 0) {
+            out.append('-');
+        } else {
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor <= -10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char)('0' - (value / divisor) % 10));
+        }
+    }
+
+    /** Append the lowest digits of a value in lowercase hexadecimal, 
+     * with leading zeros.
+     * @param out the output
+     * @param value the value
+     * @param digits the number of digits
+     * @throws IOException if the output cannot be written
+     */
+    static void appendHex(Appendable out, long value, int digits) 
+            throws IOException {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(Character.forDigit((int)(value >>> shift) & 0xF, 16));
+        }
+    }
+
+    /** Parse the decimal form of a long from a range of characters, 
+     * like <code>Long.parseLong</code>, without creating a String.
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the value
+     * @throws NumberFormatException if the range is not a long
+     */
+    static long parseLong(CharSequence s, int start, int end) {
+        if (start >= end) {
+            throw numberFormat(s, start, end);
         }
+        int i = start;
+        char first = s.charAt(i);
+        boolean negative = (first == '-');
+        if (negative || first == '+') {
+            if (++i == end) {
+                throw numberFormat(s, start, end);
+            }
+        }
+        // accumulate the negative value, which also holds Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; ++i) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0 || result < multiplyLimit) {
+                throw numberFormat(s, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormat(s, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /** Parse a long in a range, and check that it is within bounds.
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @param min the minimum value
+     * @param max the maximum value
+     * @return the value
+     * @throws NumberFormatException if the range is not a long within
+     * the bounds
+     */
+    static long parseLong(CharSequence s, int start, int end, 
+            long min, long max) {
+        long result = parseLong(s, start, end);
+        if (result < min || result > max) {
+            throw numberFormat(s, start, end);
+        }
+        return result;
+    }
+
+    /** Parse hexadecimal digits from a range of characters.
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the value
+     * @throws NumberFormatException if the range has a character that is
+     * not a hexadecimal digit
+     */
+    static long parseHex(CharSequence s, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; ++i) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                throw numberFormat(s, start, end);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /** Create the exception for a range of characters that is not a
+     * number.
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the exception
+     */
+    private static NumberFormatException numberFormat(CharSequence s, 
+            int start, int end) {
+        return new NumberFormatException("For input string: \"" //NOI18N
+            + s.subSequence(start, end) + "\""); //NOI18N
+    }
  
 }
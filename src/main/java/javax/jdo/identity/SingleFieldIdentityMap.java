@@ -0,0 +1,836 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * SingleFieldIdentityMap.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** This class is a map keyed by single field identities that stores
+ * the keys of <code>LongIdentity</code>, <code>IntIdentity</code> and
+ * <code>StringIdentity</code> instances in open-addressed arrays, 
+ * partitioned by target class name, rather than as identity instances in
+ * hash map entries. Identity instances are created only when the keys of
+ * the map are iterated. Other identities are kept in a 
+ * <code>HashMap</code>.
+ * <P>Keys are compared like the identities themselves: by target class 
+ * name, identity class and key. The map permits null values. It is not
+ * thread-safe, and its iterators are fail-fast.
+ * @param <V> the type of the values
+ * @version 3.2
+ * @since 3.2
+ */
+public class SingleFieldIdentityMap<V> 
+        extends AbstractMap<SingleFieldIdentity, V> {
+
+    /** The value reported for the keys of a map without values. */
+    static final Object PRESENT = Boolean.TRUE;
+
+    /** Whether values are stored. */
+    private final boolean withValues;
+
+    /** The partitions by target class name. */
+    private final Map<String, Partition> partitions = 
+        new LinkedHashMap<String, Partition>();
+
+    /** The entries of the other identities. */
+    private final Map<SingleFieldIdentity, Object> others = 
+        new HashMap<SingleFieldIdentity, Object>();
+
+    /** The number of entries in the partitions. */
+    private int size;
+
+    /** The number of structural modifications of the partitions. */
+    private int modCount;
+
+    /** The entry set view. */
+    private Set<Map.Entry<SingleFieldIdentity, V>> entrySet;
+
+    /** Construct an empty map.
+     */
+    public SingleFieldIdentityMap() {
+        this(true);
+    }
+
+    /** Construct an empty map.
+     * @param withValues whether values are stored; if not, the value of
+     * every key is {@link #PRESENT}
+     */
+    SingleFieldIdentityMap(boolean withValues) {
+        this.withValues = withValues;
+    }
+
+    /** Return the number of entries.
+     * @return the number of entries
+     */
+    public int size() {
+        return size + others.size();
+    }
+
+    /** Return whether there is an entry for the identity.
+     * @param key the identity
+     * @return true if there is an entry for the identity
+     */
+    public boolean containsKey(Object key) {
+        Table table = getTable(key, false);
+        if (table == null) {
+            return (key instanceof SingleFieldIdentity) 
+                && getKind(key) == KIND_OTHER && others.containsKey(key);
+        }
+        return find(table, key) >= 0;
+    }
+
+    /** Return whether there is an entry for a LongIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if there is an entry for the identity
+     */
+    public boolean containsKey(Class pcClass, long key) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_LONG, false);
+        return table != null && table.find(key) >= 0;
+    }
+
+    /** Return whether there is an entry for an IntIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if there is an entry for the identity
+     */
+    public boolean containsKey(Class pcClass, int key) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_INT, false);
+        return table != null && table.find(key) >= 0;
+    }
+
+    /** Return whether there is an entry for a StringIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if there is an entry for the identity
+     */
+    public boolean containsKey(Class pcClass, String key) {
+        StringTable table = (StringTable)getTable(pcClass, KIND_STRING, false);
+        return table != null && table.find(key) >= 0;
+    }
+
+    /** Return the value for the identity.
+     * @param key the identity
+     * @return the value, or null if there is no entry for the identity
+     */
+    public V get(Object key) {
+        Table table = getTable(key, false);
+        if (table == null) {
+            return (key instanceof SingleFieldIdentity) 
+                && getKind(key) == KIND_OTHER ? cast(others.get(key)) : null;
+        }
+        return valueAt(table, find(table, key));
+    }
+
+    /** Return the value for a LongIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the value, or null if there is no entry for the identity
+     */
+    public V get(Class pcClass, long key) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_LONG, false);
+        return (table == null) ? null : valueAt(table, table.find(key));
+    }
+
+    /** Return the value for an IntIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the value, or null if there is no entry for the identity
+     */
+    public V get(Class pcClass, int key) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_INT, false);
+        return (table == null) ? null : valueAt(table, table.find(key));
+    }
+
+    /** Return the value for a StringIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return the value, or null if there is no entry for the identity
+     */
+    public V get(Class pcClass, String key) {
+        StringTable table = (StringTable)getTable(pcClass, KIND_STRING, false);
+        return (table == null) ? null : valueAt(table, table.find(key));
+    }
+
+    /** Associate the value with the identity.
+     * @param key the identity
+     * @param value the value
+     * @return the previous value, or null if there was no entry
+     */
+    public V put(SingleFieldIdentity key, V value) {
+        Table table = getTable(key, true);
+        if (table == null) {
+            return cast(others.put(key, withValues ? value : PRESENT));
+        }
+        int slot;
+        if (table instanceof StringTable) {
+            slot = ((StringTable)table).insert(((StringIdentity)key).getKey());
+        } else if (key instanceof LongIdentity) {
+            slot = ((LongTable)table).insert(((LongIdentity)key).getKey());
+        } else {
+            slot = ((LongTable)table).insert(((IntIdentity)key).getKey());
+        }
+        return putAt(table, slot, value);
+    }
+
+    /** Associate the value with a LongIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or null if there was no entry
+     */
+    public V put(Class pcClass, long key, V value) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_LONG, true);
+        return putAt(table, table.insert(key), value);
+    }
+
+    /** Associate the value with an IntIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or null if there was no entry
+     */
+    public V put(Class pcClass, int key, V value) {
+        LongTable table = (LongTable)getTable(pcClass, KIND_INT, true);
+        return putAt(table, table.insert(key), value);
+    }
+
+    /** Associate the value with a StringIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or null if there was no entry
+     */
+    public V put(Class pcClass, String key, V value) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        StringTable table = (StringTable)getTable(pcClass, KIND_STRING, true);
+        return putAt(table, table.insert(key), value);
+    }
+
+    /** Remove the entry for the identity.
+     * @param key the identity
+     * @return the previous value, or null if there was no entry
+     */
+    public V remove(Object key) {
+        Table table = getTable(key, false);
+        if (table == null) {
+            return (key instanceof SingleFieldIdentity) 
+                && getKind(key) == KIND_OTHER ? cast(others.remove(key)) : null;
+        }
+        int slot = find(table, key);
+        if (slot < 0) {
+            return null;
+        }
+        V result = valueAt(table, slot);
+        table.removeAt(slot);
+        --size;
+        ++modCount;
+        return result;
+    }
+
+    /** Remove all entries.
+     */
+    public void clear() {
+        partitions.clear();
+        others.clear();
+        size = 0;
+        ++modCount;
+    }
+
+    /** Return the entry set view. Its iterator creates the identity of
+     * each entry stored in the arrays.
+     * @return the entry set view
+     */
+    public Set<Map.Entry<SingleFieldIdentity, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<SingleFieldIdentity, V>>() {
+                public Iterator<Map.Entry<SingleFieldIdentity, V>> iterator() {
+                    return new EntryIterator();
+                }
+                public int size() {
+                    return SingleFieldIdentityMap.this.size();
+                }
+                public void clear() {
+                    SingleFieldIdentityMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /** The kind of LongIdentity keys. */
+    private static final int KIND_LONG = 0;
+    /** The kind of IntIdentity keys. */
+    private static final int KIND_INT = 1;
+    /** The kind of StringIdentity keys. */
+    private static final int KIND_STRING = 2;
+    /** The kind of other keys. */
+    private static final int KIND_OTHER = -1;
+
+    /** Return the kind of a key.
+     * @param key the key
+     * @return the kind
+     */
+    private static int getKind(Object key) {
+        Class<?> keyClass = key.getClass();
+        if (keyClass == LongIdentity.class) {
+            return KIND_LONG;
+        } else if (keyClass == IntIdentity.class) {
+            return KIND_INT;
+        } else if (keyClass == StringIdentity.class) {
+            return KIND_STRING;
+        }
+        return KIND_OTHER;
+    }
+
+    /** Return the table for the kind and target class of an identity.
+     * @param key the identity
+     * @param create whether to create the table if there is none
+     * @return the table, or null if the key is not stored in a table or
+     * there is no table
+     */
+    private Table getTable(Object key, boolean create) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int kind = getKind(key);
+        if (kind == KIND_OTHER) {
+            return null;
+        }
+        SingleFieldIdentity identity = (SingleFieldIdentity)key;
+        return getTable(identity.getTargetClassName(), 
+            identity.getTargetClass(), kind, create);
+    }
+
+    /** Return the table for the kind and target class.
+     * @param pcClass the target class
+     * @param kind the kind
+     * @param create whether to create the table if there is none
+     * @return the table, or null if there is none
+     */
+    private Table getTable(Class pcClass, int kind, boolean create) {
+        return getTable(pcClass.getName(), pcClass, kind, create);
+    }
+
+    /** Return the table for the kind and target class.
+     * @param pcClassName the target class name
+     * @param pcClass the target class, or null if not known
+     * @param kind the kind
+     * @param create whether to create the table if there is none
+     * @return the table, or null if there is none
+     */
+    private Table getTable(String pcClassName, Class pcClass, int kind, 
+            boolean create) {
+        Partition partition = partitions.get(pcClassName);
+        if (partition == null) {
+            if (!create) {
+                return null;
+            }
+            partition = new Partition(pcClassName);
+            partitions.put(pcClassName, partition);
+        }
+        if (partition.pcClass == null) {
+            partition.pcClass = pcClass;
+        }
+        Table table = partition.tables[kind];
+        if (table == null && create) {
+            table = (kind == KIND_STRING) ? new StringTable(withValues) 
+                : new LongTable(withValues);
+            partition.tables[kind] = table;
+        }
+        return table;
+    }
+
+    /** Return the slot of an identity in its table.
+     * @param table the table
+     * @param key the identity
+     * @return the slot, or -1 if there is none
+     */
+    private static int find(Table table, Object key) {
+        if (table instanceof StringTable) {
+            return ((StringTable)table).find(((StringIdentity)key).getKey());
+        } else if (key instanceof LongIdentity) {
+            return ((LongTable)table).find(((LongIdentity)key).getKey());
+        } else {
+            return ((LongTable)table).find(((IntIdentity)key).getKey());
+        }
+    }
+
+    /** Return the value in a slot.
+     * @param table the table
+     * @param slot the slot, or -1
+     * @return the value, or null if the slot is -1
+     */
+    private V valueAt(Table table, int slot) {
+        if (slot < 0) {
+            return null;
+        }
+        return withValues ? cast(table.values[slot]) : cast(PRESENT);
+    }
+
+    /** Set the value in a slot returned by insert.
+     * @param table the table
+     * @param slot the slot, or the complement of the slot if the key 
+     * was inserted
+     * @param value the value
+     * @return the previous value
+     */
+    private V putAt(Table table, int slot, V value) {
+        V result = null;
+        if (slot < 0) {
+            slot = ~slot;
+            ++size;
+            ++modCount;
+        } else {
+            result = valueAt(table, slot);
+        }
+        if (withValues) {
+            table.values[slot] = value;
+        }
+        return result;
+    }
+
+    /** Cast a value.
+     * @param value the value
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V)value;
+    }
+
+    /** The tables of one target class.
+     */
+    private static final class Partition {
+        /** The target class name. */
+        final String pcClassName;
+        /** The target class, or null if not known. */
+        Class pcClass;
+        /** The tables by kind. */
+        final Table[] tables = new Table[3];
+        Partition(String pcClassName) {
+            this.pcClassName = pcClassName;
+        }
+    }
+
+    /** The state of a free slot. */
+    static final byte FREE = 0;
+    /** The state of a used slot. */
+    static final byte FULL = 1;
+    /** The state of a slot whose entry was removed. */
+    static final byte REMOVED = 2;
+
+    /** An open-addressed table with linear probing. Removed entries
+     * leave a marker, so slots do not move until the table is rehashed
+     * on insertion.
+     */
+    abstract static class Table {
+        /** The states of the slots. */
+        byte[] states;
+        /** The values, or null if values are not stored. */
+        Object[] values;
+        /** The number of entries. */
+        int size;
+        /** The number of slots that are not free. */
+        int used;
+
+        /** Allocate the slots.
+         * @param capacity the number of slots, a power of two
+         * @param withValues whether values are stored
+         */
+        void allocate(int capacity, boolean withValues) {
+            states = new byte[capacity];
+            values = withValues ? new Object[capacity] : null;
+            used = size;
+        }
+
+        /** Return the capacity for rehashing before an insertion: twice
+         * the current capacity if the table is more than half full
+         * without the removed slots, else the same capacity.
+         * @return the new capacity
+         */
+        int newCapacity() {
+            return (size + 1) * 8 > states.length * 3 
+                ? states.length * 2 : states.length;
+        }
+
+        /** Return whether an insertion requires rehashing.
+         * @return true if the table must be rehashed
+         */
+        boolean isFull() {
+            return (used + 1) * 4 > states.length * 3;
+        }
+
+        /** Remove the entry in a slot.
+         * @param slot the slot
+         */
+        void removeAt(int slot) {
+            states[slot] = REMOVED;
+            if (values != null) {
+                values[slot] = null;
+            }
+            --size;
+        }
+
+        /** Create the identity for the key in a slot.
+         * @param partition the partition of the table
+         * @param slot the slot
+         * @param kind the kind of the table
+         * @return the identity
+         */
+        abstract SingleFieldIdentity createIdentity(Partition partition, 
+            int slot, int kind);
+
+        /** Spread the bits of a hash code.
+         * @param hash the hash code
+         * @return the spread hash code
+         */
+        static int spread(long hash) {
+            hash *= 0x9E3779B97F4A7C15L;
+            return (int)(hash ^ (hash >>> 32));
+        }
+    }
+
+    /** A table of long keys, used for LongIdentity and IntIdentity.
+     */
+    static final class LongTable extends Table {
+        /** The keys. */
+        long[] keys;
+
+        LongTable(boolean withValues) {
+            allocate(16, withValues);
+        }
+
+        void allocate(int capacity, boolean withValues) {
+            super.allocate(capacity, withValues);
+            keys = new long[capacity];
+        }
+
+        /** Return the slot of a key.
+         * @param key the key
+         * @return the slot, or -1 if there is none
+         */
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = spread(key) & mask; ; i = (i + 1) & mask) {
+                byte state = states[i];
+                if (state == FREE) {
+                    return -1;
+                } else if (state == FULL && keys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+        /** Insert a key if it is not in the table.
+         * @param key the key
+         * @return the slot if the key was in the table, or the complement
+         * of the slot if it was inserted
+         */
+        int insert(long key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (isFull()) {
+                rehash(newCapacity());
+            }
+            int mask = keys.length - 1;
+            int i = spread(key) & mask;
+            while (states[i] == FULL) {
+                i = (i + 1) & mask;
+            }
+            if (states[i] == FREE) {
+                ++used;
+            }
+            states[i] = FULL;
+            keys[i] = key;
+            ++size;
+            return ~i;
+        }
+
+        /** Move the entries to new slots.
+         * @param capacity the new number of slots
+         */
+        private void rehash(int capacity) {
+            byte[] oldStates = states;
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            allocate(capacity, oldValues != null);
+            int mask = capacity - 1;
+            for (int j = 0; j < oldStates.length; ++j) {
+                if (oldStates[j] == FULL) {
+                    int i = spread(oldKeys[j]) & mask;
+                    while (states[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    states[i] = FULL;
+                    keys[i] = oldKeys[j];
+                    if (oldValues != null) {
+                        values[i] = oldValues[j];
+                    }
+                }
+            }
+        }
+
+        SingleFieldIdentity createIdentity(Partition partition, int slot, 
+                int kind) {
+            if (kind == KIND_INT) {
+                return new IntIdentity(partition.pcClass, 
+                    partition.pcClassName, (int)keys[slot]);
+            }
+            return new LongIdentity(partition.pcClass, 
+                partition.pcClassName, keys[slot]);
+        }
+    }
+
+    /** A table of String keys, used for StringIdentity.
+     */
+    static final class StringTable extends Table {
+        /** The keys. */
+        String[] keys;
+
+        StringTable(boolean withValues) {
+            allocate(16, withValues);
+        }
+
+        void allocate(int capacity, boolean withValues) {
+            super.allocate(capacity, withValues);
+            keys = new String[capacity];
+        }
+
+        /** Return the slot of a key.
+         * @param key the key
+         * @return the slot, or -1 if there is none
+         */
+        int find(String key) {
+            int mask = keys.length - 1;
+            for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+                byte state = states[i];
+                if (state == FREE) {
+                    return -1;
+                } else if (state == FULL && key.equals(keys[i])) {
+                    return i;
+                }
+            }
+        }
+
+        /** Insert a key if it is not in the table.
+         * @param key the key
+         * @return the slot if the key was in the table, or the complement
+         * of the slot if it was inserted
+         */
+        int insert(String key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (isFull()) {
+                rehash(newCapacity());
+            }
+            int mask = keys.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (states[i] == FULL) {
+                i = (i + 1) & mask;
+            }
+            if (states[i] == FREE) {
+                ++used;
+            }
+            states[i] = FULL;
+            keys[i] = key;
+            ++size;
+            return ~i;
+        }
+
+        void removeAt(int slot) {
+            super.removeAt(slot);
+            keys[slot] = null;
+        }
+
+        /** Move the entries to new slots.
+         * @param capacity the new number of slots
+         */
+        private void rehash(int capacity) {
+            byte[] oldStates = states;
+            String[] oldKeys = keys;
+            Object[] oldValues = values;
+            allocate(capacity, oldValues != null);
+            int mask = capacity - 1;
+            for (int j = 0; j < oldStates.length; ++j) {
+                if (oldStates[j] == FULL) {
+                    int i = spread(oldKeys[j].hashCode()) & mask;
+                    while (states[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    states[i] = FULL;
+                    keys[i] = oldKeys[j];
+                    if (oldValues != null) {
+                        values[i] = oldValues[j];
+                    }
+                }
+            }
+        }
+
+        SingleFieldIdentity createIdentity(Partition partition, int slot, 
+                int kind) {
+            return new StringIdentity(partition.pcClass, 
+                partition.pcClassName, keys[slot]);
+        }
+    }
+
+    /** The iterator over the entries, first those of the tables of each
+     * partition, then the other entries.
+     */
+    private final class EntryIterator 
+            implements Iterator<Map.Entry<SingleFieldIdentity, V>> {
+        /** The iterator over the partitions. */
+        private final Iterator<Partition> partitionIterator = 
+            partitions.values().iterator();
+        /** The iterator over the other entries. */
+        private final Iterator<Map.Entry<SingleFieldIdentity, Object>> 
+            otherIterator = others.entrySet().iterator();
+        /** The current partition. */
+        private Partition partition;
+        /** The kind of the current table. */
+        private int kind = KIND_STRING;
+        /** The current table. */
+        private Table table;
+        /** The next slot to look at in the current table. */
+        private int slot;
+        /** The slot of the entry last returned from a table, or -1. */
+        private int lastSlot = -1;
+        /** The table of the entry last returned, or null. */
+        private Table lastTable;
+        /** The expected modification count. */
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            checkForComodification();
+            while (true) {
+                if (table != null) {
+                    for (; slot < table.states.length; ++slot) {
+                        if (table.states[slot] == FULL) {
+                            return true;
+                        }
+                    }
+                    table = null;
+                }
+                if (kind < KIND_STRING) {
+                    table = partition.tables[++kind];
+                    slot = 0;
+                } else if (partitionIterator.hasNext()) {
+                    partition = partitionIterator.next();
+                    kind = KIND_LONG;
+                    table = partition.tables[kind];
+                    slot = 0;
+                } else {
+                    return otherIterator.hasNext();
+                }
+            }
+        }
+
+        public Map.Entry<SingleFieldIdentity, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (table == null) {
+                lastTable = null;
+                lastSlot = -1;
+                final Map.Entry<SingleFieldIdentity, Object> entry = 
+                    otherIterator.next();
+                return new SimpleEntry<SingleFieldIdentity, V>(
+                        entry.getKey(), SingleFieldIdentityMap.<V>cast(
+                            entry.getValue())) {
+                    private static final long serialVersionUID = 1L;
+                    public V setValue(V value) {
+                        super.setValue(value);
+                        return cast(entry.setValue(withValues ? value : PRESENT));
+                    }
+                };
+            }
+            lastTable = table;
+            lastSlot = slot++;
+            return new TableEntry(
+                table.createIdentity(partition, lastSlot, kind), 
+                valueAt(lastTable, lastSlot));
+        }
+
+        public void remove() {
+            checkForComodification();
+            if (lastTable != null) {
+                if (lastSlot < 0) {
+                    throw new IllegalStateException();
+                }
+                lastTable.removeAt(lastSlot);
+                --size;
+                ++modCount;
+                expectedModCount = modCount;
+                lastSlot = -1;
+            } else {
+                otherIterator.remove();
+            }
+        }
+
+        /** Check that the partitions were not modified other than by 
+         * this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /** An entry of a table. The slot of the key is looked up again when
+     * the value is set, because later insertions may have rehashed the
+     * table and moved the key.
+     */
+    private final class TableEntry 
+            extends SimpleEntry<SingleFieldIdentity, V> {
+        private static final long serialVersionUID = 1L;
+        TableEntry(SingleFieldIdentity key, V value) {
+            super(key, value);
+        }
+        public V setValue(V value) {
+            V result = super.setValue(value);
+            if (withValues) {
+                Table table = getTable(getKey(), false);
+                int slot = (table == null) ? -1 : find(table, getKey());
+                // the entry no longer affects the map if the key was removed
+                if (slot >= 0) {
+                    table.values[slot] = value;
+                }
+            }
+            return result;
+        }
+    }
+}
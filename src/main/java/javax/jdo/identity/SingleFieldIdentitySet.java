@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * SingleFieldIdentitySet.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/** This class is a set of single field identities that stores the keys
+ * of <code>LongIdentity</code>, <code>IntIdentity</code> and 
+ * <code>StringIdentity</code> instances in open-addressed arrays,
+ * partitioned by target class name, like {@link SingleFieldIdentityMap}.
+ * Identity instances are created only when the set is iterated.
+ * <P>The set is not thread-safe, and its iterators are fail-fast.
+ * @version 3.2
+ * @since 3.2
+ */
+public class SingleFieldIdentitySet extends AbstractSet<SingleFieldIdentity> {
+
+    /** The map holding the elements. */
+    private final SingleFieldIdentityMap<Object> map = 
+        new SingleFieldIdentityMap<Object>(false);
+
+    /** Construct an empty set.
+     */
+    public SingleFieldIdentitySet() {
+    }
+
+    /** Return the number of elements.
+     * @return the number of elements
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /** Return an iterator over the elements.
+     * @return the iterator
+     */
+    public Iterator<SingleFieldIdentity> iterator() {
+        return map.keySet().iterator();
+    }
+
+    /** Return whether the identity is an element.
+     * @param o the identity
+     * @return true if the identity is an element
+     */
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    /** Return whether a LongIdentity is an element.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity is an element
+     */
+    public boolean contains(Class pcClass, long key) {
+        return map.containsKey(pcClass, key);
+    }
+
+    /** Return whether an IntIdentity is an element.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity is an element
+     */
+    public boolean contains(Class pcClass, int key) {
+        return map.containsKey(pcClass, key);
+    }
+
+    /** Return whether a StringIdentity is an element.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity is an element
+     */
+    public boolean contains(Class pcClass, String key) {
+        return map.containsKey(pcClass, key);
+    }
+
+    /** Add the identity.
+     * @param e the identity
+     * @return true if the identity was not an element
+     */
+    public boolean add(SingleFieldIdentity e) {
+        return map.put(e, SingleFieldIdentityMap.PRESENT) == null;
+    }
+
+    /** Add a LongIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity was not an element
+     */
+    public boolean add(Class pcClass, long key) {
+        return map.put(pcClass, key, SingleFieldIdentityMap.PRESENT) == null;
+    }
+
+    /** Add an IntIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity was not an element
+     */
+    public boolean add(Class pcClass, int key) {
+        return map.put(pcClass, key, SingleFieldIdentityMap.PRESENT) == null;
+    }
+
+    /** Add a StringIdentity.
+     * @param pcClass the target class
+     * @param key the key
+     * @return true if the identity was not an element
+     */
+    public boolean add(Class pcClass, String key) {
+        return map.put(pcClass, key, SingleFieldIdentityMap.PRESENT) == null;
+    }
+
+    /** Remove the identity.
+     * @param o the identity
+     * @return true if the identity was an element
+     */
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    /** Remove all elements.
+     */
+    public void clear() {
+        map.clear();
+    }
+}
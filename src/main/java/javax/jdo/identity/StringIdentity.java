@@ -44,6 +44,18 @@ public class StringIdentity extends SingleFieldIdentity {
         hashCode = hashClassName() ^ key.hashCode();
     }
 
+    /** Constructor with class, class name and key.
+     * @param pcClass the class, or null if not known
+     * @param pcClassName the class name
+     * @param key the key
+     * @since 3.2
+     */
+    StringIdentity (Class pcClass, String pcClassName, String key) {
+        super(pcClass, pcClassName);
+        setKeyAsObject(key);
+        hashCode = hashClassName() ^ key.hashCode();
+    }
+
     /** Constructor only for Externalizable.
      */
     public StringIdentity () {
@@ -63,6 +75,32 @@ public class StringIdentity extends SingleFieldIdentity {
         return (String)keyAsObject;
     }
 
+    /** Append the String form of the key, as returned by 
+     * <code>toString</code>, to the output without creating a String.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        return out.append((String)keyAsObject);
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the key. The String of the key is the only String created
+     * from the range.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @since 3.2
+     */
+    public static StringIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        return new StringIdentity(pcClass, s.subSequence(start, end).toString());
+    }
+
     /** Determine if the other object represents the same object id.
      * @param obj the other object
      * @return true if both objects represent the same object id
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * UUIDIdentity.java
+ *
+ */
+ 
+package javax.jdo.identity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import java.util.UUID;
+
+/** This class is for identity with a single UUID field. The key is stored
+ * as its two long halves, and is written in a fixed-width form.
+ * @version 3.2
+ * @since 3.2
+ */
+public class UUIDIdentity extends SingleFieldIdentity {
+
+    /** The most significant bits of the key.
+     */
+    private long mostSigBits;
+
+    /** The least significant bits of the key.
+     */
+    private long leastSigBits;
+
+    private void construct(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+        long hilo = mostSigBits ^ leastSigBits;
+        hashCode = hashClassName() ^ ((int)(hilo >> 32)) ^ (int)hilo;
+    }
+
+    /** Constructor with class and key.
+     * @param pcClass the target class
+     * @param mostSigBits the most significant bits of the key
+     * @param leastSigBits the least significant bits of the key
+     */
+    public UUIDIdentity (Class pcClass, long mostSigBits, long leastSigBits) {
+        super(pcClass);
+        construct(mostSigBits, leastSigBits);
+    }
+
+    /** Constructor with class and key.
+     * @param pcClass the target class
+     * @param key the key
+     */
+    public UUIDIdentity (Class pcClass, UUID key) {
+        super(pcClass);
+        setKeyAsObject(key);
+        construct(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /** Constructor with class and key. The String must be in the 
+     * canonical form of {@link UUID#toString}.
+     * @param pcClass the target class
+     * @param str the key
+     */
+    public UUIDIdentity (Class pcClass, String str) {
+        super(pcClass);
+        assertKeyNotNull(str);
+        checkForm(str, 0, str.length());
+        construct(parseMostSigBits(str, 0), parseLeastSigBits(str, 0));
+    }
+
+    /** Constructor only for Externalizable.
+     */
+    public UUIDIdentity () {
+    }
+
+    /** Return the key.
+     * @return the key
+     */
+    public UUID getKey () {
+        return (UUID)getKeyAsObject();
+    }
+
+    /** Return the most significant bits of the key.
+     * @return the most significant bits of the key
+     */
+    public long getMostSignificantBits () {
+        return mostSigBits;
+    }
+
+    /** Return the least significant bits of the key.
+     * @return the least significant bits of the key
+     */
+    public long getLeastSignificantBits () {
+        return leastSigBits;
+    }
+
+    /** Return the String form of the key.
+     * @return the String form of the key
+     */
+    public String toString () {
+        return getKey().toString();
+    }
+
+    /** Append the String form of the key, as returned by 
+     * <code>toString</code>, to the output without creating a String.
+     * @param out the output
+     * @return the output
+     * @throws IOException if the output cannot be written
+     * @since 3.2
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        appendHex(out, mostSigBits >>> 32, 8);
+        out.append('-');
+        appendHex(out, mostSigBits >>> 16, 4);
+        out.append('-');
+        appendHex(out, mostSigBits, 4);
+        out.append('-');
+        appendHex(out, leastSigBits >>> 48, 4);
+        out.append('-');
+        appendHex(out, leastSigBits, 12);
+        return out;
+    }
+
+    /** Create an identity from a range of characters holding the String
+     * form of the key in the canonical form of
+     * <code>UUID.toString</code>, without creating a String from the
+     * range.
+     * @param pcClass the target class
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the identity
+     * @throws IllegalArgumentException if the range is not a valid key
+     * @since 3.2
+     */
+    public static UUIDIdentity parse(Class pcClass, CharSequence s, 
+            int start, int end) {
+        checkForm(s, start, end);
+        return new UUIDIdentity(pcClass, parseMostSigBits(s, start), 
+            parseLeastSigBits(s, start));
+    }
+
+    /** Check that a range of characters has the length and the dashes 
+     * of the canonical form of a UUID.
+     * @param s the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @throws IllegalArgumentException if the range is not in the form
+     */
+    private static void checkForm(CharSequence s, int start, int end) {
+        if (end - start != 36 || s.charAt(start + 8) != '-' 
+                || s.charAt(start + 13) != '-' || s.charAt(start + 18) != '-'
+                || s.charAt(start + 23) != '-') {
+            throw new IllegalArgumentException(msg.msg(
+                "EXC_UUIDIdentityIllegalString", //NOI18N
+                s.subSequence(start, end)));
+        }
+    }
+
+    /** Parse the most significant bits of a UUID in canonical form.
+     * @param s the characters
+     * @param start the index of the first character
+     * @return the most significant bits
+     */
+    private static long parseMostSigBits(CharSequence s, int start) {
+        return parseHex(s, start, start + 8) << 32
+            | parseHex(s, start + 9, start + 13) << 16
+            | parseHex(s, start + 14, start + 18);
+    }
+
+    /** Parse the least significant bits of a UUID in canonical form.
+     * @param s the characters
+     * @param start the index of the first character
+     * @return the least significant bits
+     */
+    private static long parseLeastSigBits(CharSequence s, int start) {
+        return parseHex(s, start + 19, start + 23) << 48
+            | parseHex(s, start + 24, start + 36);
+    }
+
+    /** Determine if the other object represents the same object id.
+     * @param obj the other object
+     * @return true if both objects represent the same object id
+     */
+    public boolean equals (Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!super.equals (obj)) {
+            return false;
+        } else {
+            UUIDIdentity other = (UUIDIdentity) obj;
+            return mostSigBits == other.mostSigBits 
+                && leastSigBits == other.leastSigBits;
+        }
+    }
+
+    /** Determine the ordering of identity objects. Keys are ordered like
+     * {@link UUID#compareTo}.
+     * @param o Other identity
+     * @return The relative ordering between the objects
+     */
+    public int compareTo(Object o) {
+        if (o instanceof UUIDIdentity) {
+            UUIDIdentity other = (UUIDIdentity)o;
+            int result = super.compare(other);
+            if (result == 0) {
+                result = Long.compare(mostSigBits, other.mostSigBits);
+                if (result == 0) {
+                    result = Long.compare(leastSigBits, other.leastSigBits);
+                }
+            }
+            return result;
+        }
+        else if (o == null) {
+            throw new ClassCastException("object is null");
+        }
+        throw new ClassCastException(this.getClass().getName() + " != " + o.getClass().getName());
+    }
+
+    /** Create the key as an Object.
+     * @return the key as an Object
+     */
+    protected Object createKeyAsObject() {
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /** Write this object. Write the superclass first.
+     * @param out the output
+     */
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal (out);
+        out.writeLong(mostSigBits);
+        out.writeLong(leastSigBits);
+    }
+
+    /** Read this object. Read the superclass first.
+     * @param in the input
+     */
+    public void readExternal(ObjectInput in)
+		throws IOException, ClassNotFoundException {
+        super.readExternal (in);
+        mostSigBits = in.readLong();
+        leastSigBits = in.readLong();
+    }
+
+}
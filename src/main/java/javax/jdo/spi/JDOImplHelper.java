@@ -24,7 +24,11 @@ package javax.jdo.spi;
 
 import org.xml.sax.ErrorHandler;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -33,7 +37,21 @@ import java.text.DateFormat;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Currency;
@@ -45,7 +63,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.jdo.Constants;
 import javax.jdo.JDOException;
@@ -71,15 +91,90 @@ import javax.xml.parsers.DocumentBuilderFactory;
  *
  */
 public class JDOImplHelper extends java.lang.Object {
+
+    /** The type code of a field of type <code>boolean</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_BOOLEAN = 0;
+
+    /** The type code of a field of type <code>char</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_CHAR = 1;
+
+    /** The type code of a field of type <code>byte</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_BYTE = 2;
+
+    /** The type code of a field of type <code>short</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_SHORT = 3;
+
+    /** The type code of a field of type <code>int</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_INT = 4;
+
+    /** The type code of a field of type <code>long</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_LONG = 5;
+
+    /** The type code of a field of type <code>float</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_FLOAT = 6;
+
+    /** The type code of a field of type <code>double</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_DOUBLE = 7;
+
+    /** The type code of a field of type <code>String</code>.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_STRING = 8;
+
+    /** The type code of a field of any other type.
+     * @see #getFieldTypeCodes(Class)
+     * @since 3.2
+     */
+    public static final byte FIELD_TYPE_OBJECT = 9;
     
-    /** This synchronized <code>HashMap</code> contains a static mapping of
-     * <code>PersistenceCapable</code> class to
-     * metadata for the class used for constructing new instances.  New entries
+    /** This synchronized <code>WeakHashMap</code> contains the registered
+     * <code>PersistenceCapable</code> classes.  New entries
      * are added by the static method in each <code>PersistenceCapable</code> 
-     * class.  Entries are never removed.
+     * class.  Entries are removed by unregisterClass and unregisterClasses,
+     * and when the class is garbage collected.  Only the key is used; the
+     * metadata is held by {@link #registeredMetadata}.  Changes to both
+     * are made while synchronized on this map.
      */    
-    private static Map<Class,Meta> registeredClasses =
-            Collections.synchronizedMap(new HashMap<Class,Meta> ());
+    private static final Map<Class,Boolean> registeredClasses =
+            Collections.synchronizedMap(new WeakHashMap<Class,Boolean> ());
+
+    /** The metadata for constructing new instances, per 
+     * <code>PersistenceCapable</code> class. The metadata is held by the
+     * class itself, so it is looked up without locking and does not
+     * prevent the class loader from being garbage collected.
+     * @since 3.2
+     */
+    private static final ClassValue<MetaHolder> registeredMetadata =
+        new ClassValue<MetaHolder>() {
+            protected MetaHolder computeValue(Class<?> type) {
+                return new MetaHolder();
+            }
+        };
     
     /** This Set contains all classes that have registered for setStateManager
      * permissions via authorizeStateManagerClass.
@@ -88,16 +183,36 @@ public class JDOImplHelper extends java.lang.Object {
     private static final Map<Class,Class>
             authorizedStateManagerClasses = new WeakHashMap<Class,Class>();
 
-    /** This list contains the registered listeners for 
-     * <code>RegisterClassEvent</code>s.
+    /** This array contains the registered listeners for 
+     * <code>RegisterClassEvent</code>s. The array is never modified; 
+     * it is replaced when a listener is added or removed, so it can be 
+     * read without synchronization.
+     */
+    private static volatile RegisterClassListener[]
+            listeners = new RegisterClassListener[0];
+
+    /** The lock serializing changes to the listeners.
      */
-    private static final List<RegisterClassListener>
-            listeners = new ArrayList<RegisterClassListener>();
+    private static final Object listenersLock = new Object();
     
-    /** The list of registered StateInterrogation instances
+    /** The array of registered StateInterrogation instances. The array
+     * is never modified; it is replaced when an instance is added or 
+     * removed, so it can be read without synchronization.
      */
-    private static List<StateInterrogation>
-            stateInterrogations = new ArrayList<StateInterrogation>();
+    private static volatile StateInterrogation[]
+            stateInterrogations = new StateInterrogation[0];
+
+    /** The StateInterrogation instance that last handled a call for an
+     * instance of a non-binary-compatible class, per class. It is tried
+     * first on later calls for instances of the same class.
+     * @since 3.2
+     */
+    private static final ClassValue<ClaimHolder> claimedStateInterrogations =
+        new ClassValue<ClaimHolder>() {
+            protected ClaimHolder computeValue(Class<?> type) {
+                return new ClaimHolder();
+            }
+        };
 
     /** The singleton <code>JDOImplHelper</code> instance.
      */    
@@ -108,13 +223,10 @@ public class JDOImplHelper extends java.lang.Object {
     private final static I18NHelper msg = 
             I18NHelper.getInstance ("javax.jdo.Bundle"); //NOI18N
     
-    /** The DateFormat pattern.
+    /** The parser for Date instances, set by registerDateFormat or
+     * registerDateTimeFormatter.
      */
-    private static String dateFormatPattern;
-
-    /** The default DateFormat instance.
-     */
-    private static DateFormat dateFormat;
+    private static volatile DateParser dateParser;
 
     /**
      * The DocumentBuilderFactory used during jdoconfig.xml parsing.
@@ -247,6 +359,55 @@ public class JDOImplHelper extends java.lang.Object {
         return meta.getFieldFlags();
     }
             
+    /** Get the field type codes for a <code>PersistenceCapable</code> class.
+     * The order of fields is the same as for field names.  The codes are
+     * {@link #FIELD_TYPE_BOOLEAN} through {@link #FIELD_TYPE_DOUBLE} for
+     * the primitive types, {@link #FIELD_TYPE_STRING} for 
+     * <code>String</code> and {@link #FIELD_TYPE_OBJECT} for any other 
+     * type, matching the <code>providedXXXField</code> and 
+     * <code>replacingXXXField</code> methods of <code>StateManager</code>.
+     * @param pcClass the <code>PersistenceCapable</code> class.
+     * @return the field type codes for the class.
+     * @since 3.2
+     */    
+    public byte[] getFieldTypeCodes (Class pcClass) {
+        Meta meta = getMeta (pcClass);
+        return meta.getFieldTypeCodes();
+    }
+
+    /** Compute the field type codes for field types.
+     * @param fieldTypes the field types.
+     * @return the field type codes.
+     * @see #getFieldTypeCodes(Class)
+     */
+    static byte[] computeFieldTypeCodes (Class[] fieldTypes) {
+        if (fieldTypes == null) {
+            return null;
+        }
+        byte[] codes = new byte[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; ++i) {
+            codes[i] = computeFieldTypeCode(fieldTypes[i]);
+        }
+        return codes;
+    }
+
+    /** Compute the field type code for a field type.
+     * @param fieldType the field type.
+     * @return the field type code.
+     */
+    private static byte computeFieldTypeCode (Class fieldType) {
+        if (fieldType == boolean.class) return FIELD_TYPE_BOOLEAN;
+        if (fieldType == char.class) return FIELD_TYPE_CHAR;
+        if (fieldType == byte.class) return FIELD_TYPE_BYTE;
+        if (fieldType == short.class) return FIELD_TYPE_SHORT;
+        if (fieldType == int.class) return FIELD_TYPE_INT;
+        if (fieldType == long.class) return FIELD_TYPE_LONG;
+        if (fieldType == float.class) return FIELD_TYPE_FLOAT;
+        if (fieldType == double.class) return FIELD_TYPE_DOUBLE;
+        if (fieldType == String.class) return FIELD_TYPE_STRING;
+        return FIELD_TYPE_OBJECT;
+    }
+
     /** Get the persistence-capable superclass for a 
      * <code>PersistenceCapable</code> class.
      * @param pcClass the <code>PersistenceCapable</code> class.
@@ -257,6 +418,27 @@ public class JDOImplHelper extends java.lang.Object {
         Meta meta = getMeta (pcClass);
         return meta.getPersistenceCapableSuperclass();
     }
+
+    /** Get the absolute field number of a field of a
+     * <code>PersistenceCapable</code> class.  Fields of the 
+     * persistence-capable superclasses are numbered first, so the number
+     * of a field declared by the class is its index in the field names 
+     * plus the number of fields inherited from the superclasses.  If the
+     * class and a superclass both declare a field with the name, the 
+     * number of the field declared by the class is returned.
+     * <P>The index from field names to numbers is computed on first use
+     * and requires the persistence-capable superclasses to be registered.
+     * @param pcClass the <code>PersistenceCapable</code> class.
+     * @param fieldName the name of the field.
+     * @return the absolute field number, or -1 if the class has no 
+     * persistent or transactional field with the name.
+     * @since 3.2
+     */
+    public int getFieldNumber (Class pcClass, String fieldName) {
+        Meta meta = getMeta (pcClass);
+        Integer fieldNumber = meta.getFieldNumbers().get(fieldName);
+        return (fieldNumber == null) ? -1 : fieldNumber.intValue();
+    }
             
     
     /** Create a new instance of the class and assign its 
@@ -425,20 +607,85 @@ public class JDOImplHelper extends java.lang.Object {
             throw new NullPointerException(msg.msg("ERR_NullClass")); //NOI18N
         Meta meta = new Meta (fieldNames, fieldTypes, 
             fieldFlags, persistenceCapableSuperclass, pc);
-        registeredClasses.put (pcClass, meta);
+        synchronized (registeredClasses) {
+            registeredMetadata.get(pcClass).meta = meta;
+            registeredClasses.put (pcClass, Boolean.TRUE);
+        }
 
         // handle class registration listeners
-        synchronized (listeners) {
-            if (!listeners.isEmpty()) {
-                RegisterClassEvent event = new RegisterClassEvent(
-                    jdoImplHelper, pcClass, fieldNames, fieldTypes, 
-                    fieldFlags, persistenceCapableSuperclass);
-                for (Iterator i = listeners.iterator(); i.hasNext();) {
-                    RegisterClassListener crl = 
-                        (RegisterClassListener)i.next();
-                    if (crl != null) {
-                        crl.registerClass(event);
-                    }
+        RegisterClassListener[] current = listeners;
+        if (current.length != 0) {
+            RegisterClassEvent event = new RegisterClassEvent(
+                jdoImplHelper, pcClass, fieldNames, fieldTypes, 
+                meta.getFieldTypeCodes(), fieldFlags, 
+                persistenceCapableSuperclass);
+            for (RegisterClassListener crl : current) {
+                if (crl != null) {
+                    crl.registerClass(event);
+                }
+            }
+        }
+    }
+
+    /** Register metadata by class for several classes at once.  The 
+     * parameters are parallel arrays with one element per class, each
+     * element as described for {@link #registerClass registerClass}.
+     * <P>All classes are registered before any listener is notified, and
+     * each listener is notified once with the events of all classes, via
+     * {@link RegisterClassListener#registerClasses(List)}.  This method is
+     * intended for implementations that register the classes of a domain
+     * model in bulk rather than from each class's static initializer.
+     * @param pcClasses the <code>PersistenceCapable</code> classes
+     * @param fieldNames the field names per class
+     * @param fieldTypes the field types per class
+     * @param fieldFlags the field flags per class
+     * @param persistenceCapableSuperclasses the most immediate 
+     * <code>PersistenceCapable</code> superclass per class
+     * @param pcs an instance of each <code>PersistenceCapable</code> class
+     * @throws IllegalArgumentException if the arrays differ in length
+     * @since 3.2
+     */
+    public static void registerClasses (Class[] pcClasses, 
+            String[][] fieldNames, Class[][] fieldTypes, 
+            byte[][] fieldFlags, Class[] persistenceCapableSuperclasses,
+            PersistenceCapable[] pcs) {
+        int count = pcClasses.length;
+        if (fieldNames.length != count || fieldTypes.length != count
+                || fieldFlags.length != count 
+                || persistenceCapableSuperclasses.length != count
+                || pcs.length != count) {
+            throw new IllegalArgumentException(
+                msg.msg("ERR_RegisterClassesLength")); //NOI18N
+        }
+        Meta[] metas = new Meta[count];
+        for (int i = 0; i < count; ++i) {
+            if (pcClasses[i] == null) 
+                throw new NullPointerException(msg.msg("ERR_NullClass")); //NOI18N
+            metas[i] = new Meta (fieldNames[i], fieldTypes[i], 
+                fieldFlags[i], persistenceCapableSuperclasses[i], pcs[i]);
+        }
+        synchronized (registeredClasses) {
+            for (int i = 0; i < count; ++i) {
+                registeredMetadata.get(pcClasses[i]).meta = metas[i];
+                registeredClasses.put (pcClasses[i], Boolean.TRUE);
+            }
+        }
+
+        // handle class registration listeners
+        RegisterClassListener[] current = listeners;
+        if (current.length != 0 && count != 0) {
+            List<RegisterClassEvent> events = 
+                new ArrayList<RegisterClassEvent>(count);
+            for (int i = 0; i < count; ++i) {
+                events.add(new RegisterClassEvent(
+                    jdoImplHelper, pcClasses[i], fieldNames[i], 
+                    fieldTypes[i], metas[i].getFieldTypeCodes(), 
+                    fieldFlags[i], persistenceCapableSuperclasses[i]));
+            }
+            events = Collections.unmodifiableList(events);
+            for (RegisterClassListener crl : current) {
+                if (crl != null) {
+                    crl.registerClasses(events);
                 }
             }
         }
@@ -473,6 +720,7 @@ public class JDOImplHelper extends java.lang.Object {
                 if ((pcClass != null) && (pcClass.getClassLoader() == cl)) {
                     // unregister pc class, if its class loader is the
                     // specified one.
+                    registeredMetadata.get(pcClass).meta = null;
                     i.remove();
                 }
             }
@@ -496,7 +744,10 @@ public class JDOImplHelper extends java.lang.Object {
             // throws exception if caller is not authorized
             sec.checkPermission (JDOPermission.MANAGE_METADATA);
         }
-        registeredClasses.remove(pcClass);
+        synchronized (registeredClasses) {
+            registeredMetadata.get(pcClass).meta = null;
+            registeredClasses.remove(pcClass);
+        }
     }
 
     /** 
@@ -506,24 +757,39 @@ public class JDOImplHelper extends java.lang.Object {
      */
     public void addRegisterClassListener (RegisterClassListener crl) {
         HashSet alreadyRegisteredClasses = null;
-        synchronized (listeners) {
-            listeners.add(crl);
-            // Make a copy of the existing set of registered classes.
-            // Between these two lines of code, any number of new class 
-            // registrations might occur, and will then all wait until this 
-            // synchronized block completes. Some of the class registrations 
-            // might be delivered twice to the newly registered listener.
+        synchronized (listenersLock) {
+            RegisterClassListener[] current = listeners;
+            RegisterClassListener[] newListeners = 
+                Arrays.copyOf(current, current.length + 1);
+            newListeners[current.length] = crl;
+            listeners = newListeners;
+        }
+        // Make a copy of the existing set of registered classes.
+        // A class registered concurrently either sees the new listener 
+        // or is in the copy, because the listeners are published before 
+        // the copy is made and the class is registered before the 
+        // listeners are read. Some of the class registrations 
+        // might be delivered twice to the newly registered listener.
+        synchronized (registeredClasses) {
             alreadyRegisteredClasses = new HashSet<Class> (registeredClasses.keySet());
         }
         // new registrations will call the new listener while the following 
         // occurs notify the new listener about already-registered classes
+        List<RegisterClassEvent> events = 
+            new ArrayList<RegisterClassEvent>(alreadyRegisteredClasses.size());
         for (Iterator it = alreadyRegisteredClasses.iterator(); it.hasNext();) {
             Class pcClass = (Class)it.next();
-            Meta meta = getMeta (pcClass);
-            RegisterClassEvent event = new RegisterClassEvent(
+            Meta meta = registeredMetadata.get(pcClass).meta;
+            if (meta == null) {
+                continue; // unregistered since the copy was made
+            }
+            events.add(new RegisterClassEvent(
                 this, pcClass, meta.getFieldNames(), meta.getFieldTypes(), 
-                meta.getFieldFlags(), meta.getPersistenceCapableSuperclass());
-            crl.registerClass (event);
+                meta.getFieldTypeCodes(), meta.getFieldFlags(), 
+                meta.getPersistenceCapableSuperclass()));
+        }
+        if (!events.isEmpty()) {
+            crl.registerClasses (Collections.unmodifiableList(events));
         }
     }
 
@@ -533,8 +799,12 @@ public class JDOImplHelper extends java.lang.Object {
      * @param crl the listener to be removed
      */
     public void removeRegisterClassListener (RegisterClassListener crl) {
-        synchronized (listeners) {
-            listeners.remove(crl);
+        synchronized (listenersLock) {
+            RegisterClassListener[] current = listeners;
+            int index = indexOf(current, crl);
+            if (index >= 0) {
+                listeners = remove(current, index);
+            }
         }
     }
 
@@ -552,7 +822,7 @@ public class JDOImplHelper extends java.lang.Object {
      * @return the <code>Meta</code> for the <code>Class</code>.
      */    
     private static Meta getMeta (Class pcClass) {
-        Meta ret = (Meta) registeredClasses.get (pcClass);
+        Meta ret = registeredMetadata.get (pcClass).meta;
         if (ret == null) {
             throw new JDOFatalUserException(
                 msg.msg ("ERR_NoMetadata", pcClass.getName())); //NOI18N
@@ -718,7 +988,30 @@ public class JDOImplHelper extends java.lang.Object {
      * StringConstructor.
      */
     static final Map<Class,StringConstructor> stringConstructorMap =
-            new HashMap<Class,StringConstructor>();
+            new ConcurrentHashMap<Class,StringConstructor>();
+
+    /** 
+     * The key classes used by {@link #construct construct}, keyed on
+     * class name. The classes are loaded by the class loader of this class
+     * or its parents, so caching them does not prevent any class loader 
+     * from being garbage collected.
+     * @since 3.2
+     */
+    private static final Map<String,Class<?>> keyClasses =
+            new ConcurrentHashMap<String,Class<?>>();
+
+    /** 
+     * The resolved way to construct an instance of a key class from a
+     * String, per key class. The entry for a class is discarded when a
+     * StringConstructor is registered for it.
+     * @since 3.2
+     */
+    private static final ClassValue<KeyConstructor> keyConstructors =
+        new ClassValue<KeyConstructor>() {
+            protected KeyConstructor computeValue(Class<?> keyClass) {
+                return getKeyConstructor(keyClass);
+            }
+        };
 
     /**
      * 
@@ -730,9 +1023,77 @@ public class JDOImplHelper extends java.lang.Object {
      * @return the previous StringConstructor registered for this class
      */
     public Object registerStringConstructor(Class cls, StringConstructor sc) {
-        synchronized(stringConstructorMap) {
-            return stringConstructorMap.put(cls, sc);
+        Object result = (sc == null) ? stringConstructorMap.remove(cls)
+            : stringConstructorMap.put(cls, sc);
+        keyConstructors.remove(cls);
+        return result;
+    }
+
+    /**
+     * Resolve the way to construct an instance of a key class from a String:
+     * the registered StringConstructor if there is one, or else the 
+     * public constructor with a single String argument.
+     * @param keyClass the key class
+     * @return the KeyConstructor
+     * @throws SecurityException if the constructor may not be looked up
+     */
+    private static KeyConstructor getKeyConstructor(Class<?> keyClass) {
+        final StringConstructor stringConstructor = 
+            stringConstructorMap.get(keyClass);
+        if (stringConstructor != null) {
+            return new KeyConstructor() {
+                Object construct(String keyString) {
+                    return stringConstructor.construct(keyString);
+                }
+            };
+        }
+        final MethodHandle keyConstructor;
+        // a SecurityException depends on the caller and is not cached
+        try {
+            keyConstructor = MethodHandles.publicLookup().unreflectConstructor(
+                keyClass.getConstructor(new Class[]{String.class}))
+                .asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException ex) {
+            // keep only the reason, so that each call gets its own exception
+            final String reason = ex.getMessage();
+            return new KeyConstructor() {
+                Object construct(String keyString) throws Exception {
+                    throw new NoSuchMethodException(reason);
+                }
+            };
+        } catch (IllegalAccessException ex) {
+            final String reason = ex.getMessage();
+            return new KeyConstructor() {
+                Object construct(String keyString) throws Exception {
+                    throw new IllegalAccessException(reason);
+                }
+            };
         }
+        return new KeyConstructor() {
+            Object construct(String keyString) throws Exception {
+                try {
+                    return keyConstructor.invokeExact(keyString);
+                } catch (Throwable t) {
+                    // as if constructed reflectively
+                    throw new InvocationTargetException(t);
+                }
+            }
+        };
+    }
+
+    /**
+     * The resolved way to construct an instance of a key class from a
+     * String.
+     * @since 3.2
+     */
+    private static abstract class KeyConstructor {
+        /**
+         * Construct an instance of the key class.
+         * @param keyString the String parameter for the constructor
+         * @return the constructed object
+         * @throws Exception if the instance cannot be constructed
+         */
+        abstract Object construct(String keyString) throws Exception;
     }
 
     /** Register the default special StringConstructor instances.
@@ -767,21 +1128,56 @@ public class JDOImplHelper extends java.lang.Object {
             }
         });
         jdoImplHelper.registerStringConstructor(Date.class, new StringConstructor() {
-            public synchronized Object construct(String s) {
+            public Object construct(String s) {
                 try {
                     // first, try the String as a Long
                     return new Date(Long.parseLong(s));
                 } catch (NumberFormatException ex) {
                     // not a Long; try the formatted date
-                    ParsePosition pp = new ParsePosition(0);
-                    Date result = dateFormat.parse(s, pp);
-                    if (result == null) {
-                        throw new JDOUserException (msg.msg(
-                            "EXC_DateStringConstructor", new Object[] //NOI18N
-                            {s, new Integer(pp.getErrorIndex()), 
-                             dateFormatPattern}));
-                    }
-                    return result;
+                    return dateParser.parse(s);
+                }
+            }
+        });
+        jdoImplHelper.registerStringConstructor(Instant.class, new StringConstructor() {
+            public Object construct(String s) {
+                try {
+                    return Instant.parse(s);
+                } catch (DateTimeParseException ex) {
+                    throw new JDOUserException(msg.msg(
+                        "EXC_TemporalStringConstructor", //NOI18N
+                        s, "Instant"), ex); //NOI18N
+                }
+            }
+        });
+        jdoImplHelper.registerStringConstructor(LocalDate.class, new StringConstructor() {
+            public Object construct(String s) {
+                try {
+                    return LocalDate.parse(s);
+                } catch (DateTimeParseException ex) {
+                    throw new JDOUserException(msg.msg(
+                        "EXC_TemporalStringConstructor", //NOI18N
+                        s, "LocalDate"), ex); //NOI18N
+                }
+            }
+        });
+        jdoImplHelper.registerStringConstructor(LocalDateTime.class, new StringConstructor() {
+            public Object construct(String s) {
+                try {
+                    return LocalDateTime.parse(s);
+                } catch (DateTimeParseException ex) {
+                    throw new JDOUserException(msg.msg(
+                        "EXC_TemporalStringConstructor", //NOI18N
+                        s, "LocalDateTime"), ex); //NOI18N
+                }
+            }
+        });
+        jdoImplHelper.registerStringConstructor(UUID.class, new StringConstructor() {
+            public Object construct(String s) {
+                try {
+                    return UUID.fromString(s);
+                } catch (IllegalArgumentException ex) {
+                    throw new JDOUserException(msg.msg(
+                        "EXC_UUIDStringConstructor", s), ex); //NOI18N
                 }
             }
         });
@@ -831,25 +1227,20 @@ public class JDOImplHelper extends java.lang.Object {
      * instance registered, use it. If not, try to find a constructor for
      * the class with a single String argument. Otherwise, throw a
      * JDOUserException.
+     * <P>The key class and the way to construct it are resolved on the
+     * first call for a class name and cached.
      * @param className the name of the class
      * @param keyString the String parameter for the constructor
      * @return the result of construction
      */
     public static Object construct(String className, String keyString) {
-        StringConstructor stringConstructor;
         try {
-            Class<?> keyClass = Class.forName(className);
-            synchronized(stringConstructorMap) {
-                stringConstructor = 
-                        (StringConstructor) stringConstructorMap.get(keyClass);
-            }
-            if (stringConstructor != null) {
-                return stringConstructor.construct(keyString);
-            } else {
-                Constructor keyConstructor = 
-                    keyClass.getConstructor(new Class[]{String.class});
-                return keyConstructor.newInstance(new Object[]{keyString});
+            Class<?> keyClass = keyClasses.get(className);
+            if (keyClass == null) {
+                keyClass = Class.forName(className);
+                keyClasses.put(className, keyClass);
             }
+            return keyConstructors.get(keyClass).construct(keyString);
         } catch (JDOException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -900,12 +1291,133 @@ public class JDOImplHelper extends java.lang.Object {
      * @since 2.0
      * @param df the DateFormat instance to use
      */
-    public synchronized void registerDateFormat(DateFormat df) {
-        dateFormat = df;
+    public void registerDateFormat(DateFormat df) {
+        String pattern;
         if (df instanceof SimpleDateFormat) {
-            dateFormatPattern = ((SimpleDateFormat)df).toPattern();
+            pattern = ((SimpleDateFormat)df).toPattern();
         } else {
-            dateFormatPattern = msg.msg("MSG_unknown"); //NOI18N
+            pattern = msg.msg("MSG_unknown"); //NOI18N
+        }
+        dateParser = new DateFormatParser(df, pattern);
+    }
+
+    /**
+     * Register a DateTimeFormatter instance for use with constructing Date 
+     * instances, replacing the registered DateFormat instance.
+     * DateTimeFormatter instances are thread-safe, so parsing does not
+     * require a copy of the formatter per thread. If the parsed text has
+     * no offset or time zone, the zone of the formatter or else the 
+     * default time zone is used; if it has no time, the start of the day
+     * is used.
+     * @since 3.2
+     * @param dtf the DateTimeFormatter instance to use
+     */
+    public void registerDateTimeFormatter(DateTimeFormatter dtf) {
+        dateParser = new DateTimeFormatterParser(dtf);
+    }
+
+    /**
+     * The parser for the formatted form of Date keys.
+     * @since 3.2
+     */
+    private static abstract class DateParser {
+        /**
+         * Parse the String to a Date.
+         * @param s the formatted date
+         * @return the Date
+         * @throws JDOUserException if the String cannot be parsed
+         */
+        abstract Date parse(String s);
+
+        /**
+         * Create the exception for a String that cannot be parsed.
+         * @param s the formatted date
+         * @param errorIndex the position of the error
+         * @param pattern the pattern for the message
+         * @param cause the cause, or null
+         * @return the exception
+         */
+        JDOUserException parseException(String s, int errorIndex,
+                String pattern, Throwable cause) {
+            return new JDOUserException (msg.msg(
+                "EXC_DateStringConstructor", new Object[] //NOI18N
+                {s, new Integer(errorIndex), pattern}), cause);
+        }
+    }
+
+    /**
+     * The parser using a registered DateFormat instance. DateFormat
+     * instances are not thread-safe, so each thread parses with its 
+     * own copy.
+     * @since 3.2
+     */
+    private static class DateFormatParser extends DateParser {
+        /** The registered DateFormat instance. */
+        private final DateFormat dateFormat;
+        /** The pattern for error messages. */
+        private final String pattern;
+        /** The copy of the DateFormat instance per thread. */
+        private final ThreadLocal<DateFormat> dateFormats =
+            new ThreadLocal<DateFormat>() {
+                protected DateFormat initialValue() {
+                    return (DateFormat)dateFormat.clone();
+                }
+            };
+        DateFormatParser(DateFormat dateFormat, String pattern) {
+            this.dateFormat = dateFormat;
+            this.pattern = pattern;
+        }
+        Date parse(String s) {
+            ParsePosition pp = new ParsePosition(0);
+            Date result = dateFormats.get().parse(s, pp);
+            if (result == null) {
+                throw parseException(s, pp.getErrorIndex(), pattern, null);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The parser using a registered DateTimeFormatter instance.
+     * @since 3.2
+     */
+    private static class DateTimeFormatterParser extends DateParser {
+        /** The registered DateTimeFormatter instance. */
+        private final DateTimeFormatter formatter;
+        DateTimeFormatterParser(DateTimeFormatter formatter) {
+            this.formatter = formatter;
+        }
+        Date parse(String s) {
+            TemporalAccessor parsed;
+            try {
+                parsed = formatter.parse(s);
+            } catch (DateTimeParseException ex) {
+                throw parseException(s, ex.getErrorIndex(), 
+                    formatter.toString(), ex);
+            }
+            try {
+                if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+                    return Date.from(Instant.from(parsed));
+                }
+                LocalDate date = parsed.query(TemporalQueries.localDate());
+                if (date == null) {
+                    // the pattern has no date
+                    throw parseException(s, 0, formatter.toString(), null);
+                }
+                LocalTime time = parsed.query(TemporalQueries.localTime());
+                ZoneId zone = parsed.query(TemporalQueries.zone());
+                if (zone == null) {
+                    zone = ZoneId.systemDefault();
+                }
+                return Date.from(ZonedDateTime.of(date,
+                    (time == null) ? LocalTime.MIDNIGHT : time, zone)
+                    .toInstant());
+            } catch (DateTimeException ex) {
+                throw parseException(s, 0, formatter.toString(), ex);
+            } catch (IllegalArgumentException ex) {
+                // thrown by Date.from if the instant is out of range
+                throw parseException(s, 0, formatter.toString(), ex);
+            }
         }
     }
 
@@ -913,9 +1425,9 @@ public class JDOImplHelper extends java.lang.Object {
      * class.  The information is used at runtime to provide field names and
      * field types to the JDO Model.
      *
-     * This is the value of the <code>HashMap</code> which
+     * This is held by the <code>ClassValue</code> which
      * relates the <code>PersistenceCapable Class</code>
-     * as a key to the metadata.
+     * to the metadata.
      */    
     static class Meta {
         
@@ -931,6 +1443,7 @@ public class JDOImplHelper extends java.lang.Object {
               Class persistenceCapableSuperclass, PersistenceCapable pc) {
             this.fieldNames = fieldNames;
             this.fieldTypes = fieldTypes;
+            this.fieldTypeCodes = computeFieldTypeCodes(fieldTypes);
             this.fieldFlags = fieldFlags;
             this.persistenceCapableSuperclass = persistenceCapableSuperclass;
             this.pc = pc;
@@ -961,6 +1474,18 @@ public class JDOImplHelper extends java.lang.Object {
         Class[] getFieldTypes() {
             return fieldTypes;
         }
+
+        /** This is an array of field type codes computed from the
+         * field types.
+         */
+        byte[] fieldTypeCodes;
+
+        /** Get the field type codes from the metadata.
+         * @return the array of field type codes.
+         */
+        byte[] getFieldTypeCodes() {
+            return fieldTypeCodes;
+        }
     
         /** This is an array of field flags used
          * for the Model at runtime.  The field
@@ -997,6 +1522,58 @@ public class JDOImplHelper extends java.lang.Object {
         PersistenceCapable getPC() {
             return pc;
         }
+
+        /** This is the number of fields of the 
+         * <code>PersistenceCapable</code> superclasses, or -1 if not
+         * yet computed.
+         */
+        private volatile int inheritedFieldCount = -1;
+
+        /** Get the number of fields of the 
+         * <code>PersistenceCapable</code> superclasses.
+         * @return the number of inherited fields
+         */
+        int getInheritedFieldCount() {
+            int count = inheritedFieldCount;
+            if (count < 0) {
+                count = 0;
+                if (persistenceCapableSuperclass != null) {
+                    Meta superMeta = getMeta (persistenceCapableSuperclass);
+                    count = superMeta.getInheritedFieldCount() 
+                        + superMeta.getFieldNames().length;
+                }
+                inheritedFieldCount = count;
+            }
+            return count;
+        }
+
+        /** This is the index from field names to absolute field
+         * numbers, or null if not yet computed.
+         */
+        private volatile Map<String,Integer> fieldNumbers;
+
+        /** Get the index from field names to absolute field numbers,
+         * including the fields of the <code>PersistenceCapable</code>
+         * superclasses.
+         * @return the index
+         */
+        Map<String,Integer> getFieldNumbers() {
+            Map<String,Integer> result = fieldNumbers;
+            if (result == null) {
+                result = new HashMap<String,Integer>();
+                if (persistenceCapableSuperclass != null) {
+                    result.putAll(
+                        getMeta (persistenceCapableSuperclass).getFieldNumbers());
+                }
+                // fields declared by this class hide inherited fields
+                int offset = getInheritedFieldCount();
+                for (int i = 0; i < fieldNames.length; ++i) {
+                    result.put(fieldNames[i], Integer.valueOf(offset + i));
+                }
+                fieldNumbers = result;
+            }
+            return result;
+        }
     
         /** Return the string form of the metadata.
          * @return the string form
@@ -1006,52 +1583,137 @@ public class JDOImplHelper extends java.lang.Object {
         }
     }
     
+    /** The per-class slot for the metadata of a registered
+     * <code>PersistenceCapable</code> class.
+     * @since 3.2
+     */
+    private static final class MetaHolder {
+        /** The metadata, or null if the class is not registered. */
+        volatile Meta meta;
+    }
+
     /**
-     * Add a StateInterrogation to the list. Create a new list
-     * in case there is an iterator open on the original list.
+     * Add a StateInterrogation to the list. Create a new array
+     * so that readers, which do not synchronize, are not affected.
      * @param si the StateInterrogation to add
      */
     public synchronized void addStateInterrogation(StateInterrogation si) {
-        List<StateInterrogation> newList =
-                new ArrayList<StateInterrogation>(stateInterrogations);
-        newList.add(si);
-        stateInterrogations = newList;
+        StateInterrogation[] current = stateInterrogations;
+        StateInterrogation[] newArray = 
+            Arrays.copyOf(current, current.length + 1);
+        newArray[current.length] = si;
+        stateInterrogations = newArray;
     }
     
     /**
-     * Remove a StateInterrogation from the list. Create a new list
-     * in case there is an iterator open on the original list.
+     * Remove a StateInterrogation from the list. Create a new array
+     * so that readers, which do not synchronize, are not affected.
      * @param si the StateInterrogation to remove
      */
     public synchronized void removeStateInterrogation(StateInterrogation si) {
-        List<StateInterrogation> newList =
-                new ArrayList<StateInterrogation>(stateInterrogations);
-        newList.remove(si);
-        stateInterrogations = newList;
+        StateInterrogation[] current = stateInterrogations;
+        int index = indexOf(current, si);
+        if (index >= 0) {
+            stateInterrogations = remove(current, index);
+        }
     }
-    
+
     /**
-     * Return an Iterator over all StateInterrogation instances.
-     * Synchronize to avoid add/remove/iterate conflicts.
-     * @return an Iterator over all StateInterrogation instances.
+     * Return the index of the first element equal to the given one.
+     * @param array the array
+     * @param element the element, which may be null
+     * @return the index, or -1 if there is no such element
      */
-    private synchronized Iterator getStateInterrogationIterator() {
-        return stateInterrogations.iterator();
+    private static int indexOf(Object[] array, Object element) {
+        for (int i = 0; i < array.length; ++i) {
+            if (element == null ? array[i] == null : element.equals(array[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return a copy of the array without the element at the given index.
+     * @param array the array
+     * @param index the index of the element to remove
+     * @param <T> the type of the elements
+     * @return the copy
+     */
+    private static <T> T[] remove(T[] array, int index) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, 
+            array.length - index - 1);
+        return result;
     }
     
+    /**
+     * Return the StateInterrogation that handled the last call for an
+     * instance of the class of the given instance, if it is still
+     * registered.
+     * @param pc the instance
+     * @param current the current array of StateInterrogation instances
+     * @return the StateInterrogation, or null if there is none
+     */
+    private static StateInterrogation getClaimedStateInterrogation(
+            Object pc, StateInterrogation[] current) {
+        if (pc == null) {
+            return null;
+        }
+        ClaimHolder holder = claimedStateInterrogations.get(pc.getClass());
+        Claim claim = holder.claim;
+        if (claim == null) {
+            return null;
+        }
+        StateInterrogation si = claim.getStateInterrogation(current);
+        if (si == null) {
+            // a claim made against a replaced array may be for a removed
+            // instance, so forget it
+            holder.claim = null;
+        }
+        return si;
+    }
+
+    /**
+     * Remember the StateInterrogation that handled a call for an
+     * instance of the class of the given instance.
+     * @param pc the instance
+     * @param current the array of StateInterrogation instances searched
+     * @param si the StateInterrogation that handled the call
+     */
+    private static void claim(Object pc, StateInterrogation[] current,
+            StateInterrogation si) {
+        if (pc != null) {
+            claimedStateInterrogations.get(pc.getClass()).claim =
+                new Claim(current, si);
+        }
+    }
+
     /**
      * Mark a non-binary-compatible instance dirty. Delegate to all
      * registered StateInterrogation instances until one of them
-     * handles the call.
+     * handles the call. The StateInterrogation that last handled a call 
+     * for the class of the instance is tried first.
      * @param pc the instance to mark dirty
      * @param fieldName the field to mark dirty
      */
     public void nonBinaryCompatibleMakeDirty(Object pc, String fieldName) {
-        Iterator sit = getStateInterrogationIterator();
-        while (sit.hasNext()) {
-            StateInterrogation si = (StateInterrogation)sit.next();
+        StateInterrogation[] current = stateInterrogations;
+        StateInterrogation claimed = getClaimedStateInterrogation(pc, current);
+        if (claimed != null) {
+            try {
+                if (claimed.makeDirty(pc, fieldName)) return;
+            } catch (Throwable t) {
+                // ignore exceptions from errant StateInterrogations
+            }
+        }
+        for (StateInterrogation si : current) {
+            if (si == claimed) continue;
             try {
-                if (si.makeDirty(pc, fieldName)) return;
+                if (si.makeDirty(pc, fieldName)) {
+                    claim(pc, current, si);
+                    return;
+                }
             } catch (Throwable t) {
                 continue; // ignore exceptions from errant StateInterrogations
             }
@@ -1062,7 +1724,8 @@ public class JDOImplHelper extends java.lang.Object {
      * Determine the state of a non-binary-compatible instance.
      * Delegate to all registered StateInterrogation instances until
      * one of them handles the call (returns a non-null Boolean 
-     * with the answer).
+     * with the answer). The StateInterrogation that last handled a call 
+     * for the class of the instance is tried first.
      * The caller provides the stateless "method object" that does 
      * the actual call to the StateInterrogation instance.
      * @param pc the instance to be checked
@@ -1074,16 +1737,28 @@ public class JDOImplHelper extends java.lang.Object {
      */
     public boolean nonBinaryCompatibleIs(Object pc, 
             StateInterrogationBooleanReturn sibr) {
-        Iterator sit = getStateInterrogationIterator();
-        while (sit.hasNext()) {
-            StateInterrogation si = (StateInterrogation)sit.next();
+        StateInterrogation[] current = stateInterrogations;
+        StateInterrogation claimed = getClaimedStateInterrogation(pc, current);
+        if (claimed != null) {
+            try {
+                Boolean result = sibr.is(pc, claimed);
+                if (result != null) return result.booleanValue();
+            } catch (Throwable t) {
+                // ignore exceptions from errant StateInterrogations
+            }
+        }
+        for (StateInterrogation si : current) {
+            if (si == claimed) continue;
             Boolean result;
             try {
                 result = sibr.is(pc, si);
             } catch (Throwable t) {
                 continue; // ignore exceptions from errant StateInterrogations
             }
-            if (result != null) return result.booleanValue();
+            if (result != null) {
+                claim(pc, current, si);
+                return result.booleanValue();
+            }
         }
         return false;
     }
@@ -1092,6 +1767,8 @@ public class JDOImplHelper extends java.lang.Object {
      * Return an object associated with a non-binary-compatible instance.
      * Delegate to all registered StateInterrogation instances until
      * one of them handles the call (returns a non-null answer).
+     * The StateInterrogation that last handled a call for the class of 
+     * the instance is tried first.
      * The caller provides the stateless "method object" that does 
      * the actual call to the StateInterrogation instance.
      * @param pc the instance whose associated object is needed
@@ -1102,20 +1779,71 @@ public class JDOImplHelper extends java.lang.Object {
      */
     public Object nonBinaryCompatibleGet(Object pc, 
             StateInterrogationObjectReturn sibr) {
-        Iterator sit = getStateInterrogationIterator();
-        while (sit.hasNext()) {
-            StateInterrogation si = (StateInterrogation)sit.next();
+        StateInterrogation[] current = stateInterrogations;
+        StateInterrogation claimed = getClaimedStateInterrogation(pc, current);
+        if (claimed != null) {
+            try {
+                Object result = sibr.get(pc, claimed);
+                if (result != null) return result;
+            } catch (Throwable t) {
+                // ignore exceptions from errant StateInterrogations
+            }
+        }
+        for (StateInterrogation si : current) {
+            if (si == claimed) continue;
             Object result;
             try {
                 result = sibr.get(pc, si);
             } catch (Throwable t) {
                 continue; // ignore exceptions from errant StateInterrogations
             }
-            if (result != null) return result;
+            if (result != null) {
+                claim(pc, current, si);
+                return result;
+            }
         }
         return null;
     }
     
+    /** The per-class slot for the StateInterrogation that last handled
+     * a call for an instance of the class.
+     * @since 3.2
+     */
+    private static final class ClaimHolder {
+        /** The last claim, or null. */
+        volatile Claim claim;
+    }
+
+    /** A StateInterrogation that handled a call, together with the array
+     * of StateInterrogation instances it was found in. The claim is only
+     * valid while that array is current. Both are held weakly, so that a
+     * claim does not keep a removed StateInterrogation, or the class
+     * loader of its implementation, reachable.
+     * @since 3.2
+     */
+    private static final class Claim {
+        /** The array the StateInterrogation was found in. */
+        private final WeakReference<StateInterrogation[]> stateInterrogations;
+        /** The StateInterrogation that handled the call. */
+        private final WeakReference<StateInterrogation> stateInterrogation;
+        Claim(StateInterrogation[] stateInterrogations,
+                StateInterrogation stateInterrogation) {
+            this.stateInterrogations =
+                new WeakReference<StateInterrogation[]>(stateInterrogations);
+            this.stateInterrogation =
+                new WeakReference<StateInterrogation>(stateInterrogation);
+        }
+        /** Return the StateInterrogation if the claim is still valid.
+         * @param current the current array of StateInterrogation instances
+         * @return the StateInterrogation, or null if the claim is stale
+         */
+        StateInterrogation getStateInterrogation(
+                StateInterrogation[] current) {
+            return (stateInterrogations.get() == current)
+                ? stateInterrogation.get() : null;
+        }
+    }
+
     /** This is an interface used to interrogate the state of an instance
      * that does not implement PersistenceCapable. It is used for the
      * methods that return a boolean value.
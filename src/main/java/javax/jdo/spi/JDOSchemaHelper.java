@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo.spi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jdo.JDOFatalInternalException;
+import javax.jdo.JDOFatalUserException;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLResolver;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * This class gives JDO implementations shared access to the DTDs and XML
+ * schemas bundled with the JDO API for the metadata (jdo), mapping (orm),
+ * query (jdoquery) and configuration (jdoconfig) documents.
+ * <P>Each schema is compiled once, on first request, into a
+ * <code>javax.xml.validation.Schema</code>, which is immutable and
+ * thread-safe and can be set on any number of
+ * <code>DocumentBuilderFactory</code>, <code>SAXParserFactory</code> or
+ * <code>Validator</code> instances. The entity resolvers serve the bundled
+ * DTDs and schemas from memory when a document refers to them by public
+ * id or by their standard system id, so that parsing does not access the
+ * network or the class path again.
+ * @since 3.2
+ */
+public class JDOSchemaHelper {
+
+    /** The Internationalization message helper. */
+    private final static I18NHelper msg =
+            I18NHelper.getInstance ("javax.jdo.Bundle"); //NOI18N
+
+    /** The package of the bundled resources. */
+    private static final String RESOURCE_PACKAGE = "javax/jdo/"; //NOI18N
+
+    /**
+     * The system id prefixes under which the bundled DTDs and schemas are
+     * published or commonly referenced.
+     */
+    private static final String[] SYSTEM_ID_PREFIXES = {
+        "https://db.apache.org/jdo/xmlns/", //NOI18N
+        "http://db.apache.org/jdo/xmlns/", //NOI18N
+        "http://xmlns.jcp.org/dtd/", //NOI18N
+        "http://xmlns.jcp.org/xml/ns/jdo/", //NOI18N
+        "http://java.sun.com/dtd/", //NOI18N
+        "http://java.sun.com/xml/ns/jdo/", //NOI18N
+        "file:/javax/jdo/" //NOI18N
+    };
+
+    /** The bundled DTDs by public id. */
+    private static final Map<String, String> dtdsByPublicId =
+        new HashMap<String, String>();
+
+    static {
+        String[][] dtds = {
+            {"jdo", "Metadata", "2_0", "2.0"}, //NOI18N
+            {"jdo", "Metadata", "2_2", "2.2"}, //NOI18N
+            {"jdo", "Metadata", "3_0", "3.0"}, //NOI18N
+            {"jdo", "Metadata", "3_1", "3.1"}, //NOI18N
+            {"jdo", "Metadata", "3_2", "3.2"}, //NOI18N
+            {"orm", "Mapping Metadata", "2_0", "2.0"}, //NOI18N
+            {"orm", "Mapping Metadata", "2_2", "2.2"}, //NOI18N
+            {"orm", "Mapping Metadata", "3_0", "3.0"}, //NOI18N
+            {"orm", "Mapping Metadata", "3_1", "3.1"}, //NOI18N
+            {"orm", "Mapping Metadata", "3_2", "3.2"}, //NOI18N
+            {"jdoquery", "Query Metadata", "2_0", "2.0"}, //NOI18N
+            {"jdoquery", "Query Metadata", "2_2", "2.2"}, //NOI18N
+            {"jdoquery", "Query Metadata", "3_0", "3.0"}, //NOI18N
+            {"jdoquery", "Query Metadata", "3_1", "3.1"}, //NOI18N
+            {"jdoquery", "Query Metadata", "3_2", "3.2"}, //NOI18N
+            {"jdoconfig", "Configuration", "2_1", "2.1"}, //NOI18N
+            {"jdoconfig", "Configuration", "2_2", "2.2"}, //NOI18N
+            {"jdoconfig", "Configuration", "3_0", "3.0"}, //NOI18N
+            {"jdoconfig", "Configuration", "3_1", "3.1"}, //NOI18N
+            {"jdoconfig", "Configuration", "3_2", "3.2"} //NOI18N
+        };
+        for (String[] dtd : dtds) {
+            String organization = "3.2".equals(dtd[3]) //NOI18N
+                ? "The Apache Software Foundation" //NOI18N
+                : "Sun Microsystems, Inc."; //NOI18N
+            dtdsByPublicId.put("-//" + organization //NOI18N
+                + "//DTD Java Data Objects " + dtd[1] + " " + dtd[3] //NOI18N
+                + "//EN", //NOI18N
+                RESOURCE_PACKAGE + dtd[0] + "_" + dtd[2] + ".dtd"); //NOI18N
+        }
+    }
+
+    /** The contents of the bundled resources read so far, by name. */
+    private static final ConcurrentMap<String, byte[]> resources =
+        new ConcurrentHashMap<String, byte[]>();
+
+    /** The compiled schemas by resource name. */
+    private static final ConcurrentMap<String, Schema> schemas =
+        new ConcurrentHashMap<String, Schema>();
+
+    /** The shared resolver. */
+    private static final BundledResolver resolver = new BundledResolver();
+
+    /** This class is not instantiated. */
+    private JDOSchemaHelper() {
+    }
+
+    /**
+     * Get the compiled schema bundled as the given resource.
+     * @param resourceName the name of the resource, for example
+     * {@link javax.jdo.Constants#ORM_XSD_RESOURCE}
+     * @return the shared schema
+     * @throws JDOFatalUserException if there is no such bundled schema
+     * @throws JDOFatalInternalException if the schema cannot be compiled
+     */
+    public static Schema getSchema(String resourceName) {
+        Schema schema = schemas.get(resourceName);
+        if (schema == null) {
+            // schemas are immutable, so a concurrent duplicate compilation
+            // is harmless; the first one stored wins
+            schema = compileSchema(resourceName);
+            Schema previous = schemas.putIfAbsent(resourceName, schema);
+            if (previous != null) {
+                schema = previous;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Get the compiled schema for the given document type and version.
+     * @param documentType one of "jdo", "orm", "jdoquery" or "jdoconfig"
+     * @param version the version, for example "3.2"
+     * @return the shared schema
+     * @throws JDOFatalUserException if there is no such bundled schema
+     * @throws JDOFatalInternalException if the schema cannot be compiled
+     */
+    public static Schema getSchema(String documentType, String version) {
+        return getSchema(RESOURCE_PACKAGE + documentType + "_" //NOI18N
+            + version.replace('.', '_') + ".xsd"); //NOI18N
+    }
+
+    /**
+     * Get a SAX entity resolver serving the bundled DTDs and schemas.
+     * Entities that are not bundled are not resolved, so that the parser
+     * falls back to its default behavior. The resolver is thread-safe.
+     * @return the shared entity resolver
+     */
+    public static EntityResolver getEntityResolver() {
+        return resolver;
+    }
+
+    /**
+     * Get a StAX resolver serving the bundled DTDs and schemas, for the
+     * <code>XMLInputFactory.RESOLVER</code> property. Entities that are
+     * not bundled are not resolved. The resolver is thread-safe.
+     * @return the shared StAX resolver
+     */
+    public static XMLResolver getXMLResolver() {
+        return resolver;
+    }
+
+    /**
+     * Get the name of the bundled resource with the given public or
+     * system id.
+     * @param publicId the public id, or null
+     * @param systemId the system id, or null
+     * @return the resource name, or null if not bundled
+     */
+    static String getResourceName(String publicId, String systemId) {
+        String resourceName =
+            publicId == null ? null : dtdsByPublicId.get(publicId);
+        if (resourceName == null && systemId != null) {
+            for (String prefix : SYSTEM_ID_PREFIXES) {
+                if (systemId.startsWith(prefix)) {
+                    String fileName = systemId.substring(prefix.length());
+                    if (fileName.indexOf('/') == -1
+                            && (fileName.endsWith(".dtd") //NOI18N
+                                || fileName.endsWith(".xsd")) //NOI18N
+                            && getResource(RESOURCE_PACKAGE + fileName) != null) {
+                        resourceName = RESOURCE_PACKAGE + fileName;
+                    }
+                    break;
+                }
+            }
+        }
+        return resourceName;
+    }
+
+    /**
+     * Compile the bundled schema.
+     * @param resourceName the name of the resource
+     * @return the schema
+     */
+    private static Schema compileSchema(String resourceName) {
+        byte[] bytes = resourceName.endsWith(".xsd") //NOI18N
+            ? getResource(resourceName) : null;
+        if (bytes == null) {
+            throw new JDOFatalUserException(msg.msg(
+                "EXC_SchemaNotBundled", resourceName)); //NOI18N
+        }
+        try {
+            // SchemaFactory is not thread-safe; use one per compilation
+            SchemaFactory factory =
+                SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            return factory.newSchema(new StreamSource(
+                new ByteArrayInputStream(bytes), resourceName));
+        } catch (SAXException ex) {
+            throw new JDOFatalInternalException(msg.msg(
+                "EXC_SchemaCompilationFailed", resourceName), ex); //NOI18N
+        }
+    }
+
+    /**
+     * Get the contents of a bundled resource, reading it on first use.
+     * @param resourceName the name of the resource
+     * @return the contents, or null if there is no such resource
+     */
+    private static byte[] getResource(final String resourceName) {
+        byte[] bytes = resources.get(resourceName);
+        if (bytes == null) {
+            bytes = AccessController.doPrivileged(
+                new PrivilegedAction<byte[]>() {
+                    public byte[] run() {
+                        return readResource(resourceName);
+                    }
+                }
+            );
+            if (bytes != null) {
+                resources.putIfAbsent(resourceName, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Read a bundled resource.
+     * @param resourceName the name of the resource
+     * @return the contents, or null if there is no such resource
+     */
+    private static byte[] readResource(String resourceName) {
+        InputStream in =
+            JDOSchemaHelper.class.getResourceAsStream("/" + resourceName); //NOI18N
+        if (in == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                // gulp
+            }
+        }
+    }
+
+    /**
+     * The SAX and StAX resolver serving the bundled DTDs and schemas.
+     */
+    private static class BundledResolver
+            implements EntityResolver, XMLResolver {
+
+        public InputSource resolveEntity(String publicId, String systemId) {
+            String resourceName = getResourceName(publicId, systemId);
+            if (resourceName == null) {
+                return null;
+            }
+            InputSource source = new InputSource(
+                new ByteArrayInputStream(getResource(resourceName)));
+            source.setPublicId(publicId);
+            source.setSystemId(systemId);
+            return source;
+        }
+
+        public Object resolveEntity(String publicID, String systemID,
+                String baseURI, String namespace) {
+            String resourceName = getResourceName(publicID, systemID);
+            return resourceName == null
+                ? null
+                : new ByteArrayInputStream(getResource(resourceName));
+        }
+    }
+}
@@ -90,6 +90,42 @@ public interface PersistenceCapable {
      * then the field is not declared as TRANSIENT.
      */
     static final byte SERIALIZABLE = 16;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance is persistent.
+     * @since 3.2
+     */
+    static final int STATE_PERSISTENT = 1;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance is transactional.
+     * @since 3.2
+     */
+    static final int STATE_TRANSACTIONAL = 2;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance is dirty.
+     * @since 3.2
+     */
+    static final int STATE_DIRTY = 4;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance was made persistent in the current transaction.
+     * @since 3.2
+     */
+    static final int STATE_NEW = 8;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance was deleted in the current transaction.
+     * @since 3.2
+     */
+    static final int STATE_DELETED = 16;
+
+    /** The bit set in the result of {@link #jdoGetStateFlags()}
+     * if the instance is detached.
+     * @since 3.2
+     */
+    static final int STATE_DETACHED = 32;
     
     /** Return the associated PersistenceManager if there is one.
      * Transactional and persistent instances return the associated
@@ -308,6 +344,32 @@ public interface PersistenceCapable {
      * @since 2.0
      */
     boolean jdoIsDetached();
+
+    /** Return the lifecycle state of this object in a single call.
+     * The result is the bitwise or of {@link #STATE_PERSISTENT},
+     * {@link #STATE_TRANSACTIONAL}, {@link #STATE_DIRTY},
+     * {@link #STATE_NEW}, {@link #STATE_DELETED} and
+     * {@link #STATE_DETACHED} for each of the corresponding
+     * <code>jdoIsXXX</code> methods that returns true.
+     *<P>The default implementation calls each of those methods in turn;
+     * an enhancer can generate a single call to the
+     * <code>StateManager</code> instead.
+     *<P>
+     * @see javax.jdo.JDOHelper#getStateFlags(Object pc)
+     * @see StateManager#getStateFlags(PersistenceCapable pc)
+     * @return the state bits of this instance.
+     * @since 3.2
+     */
+    default int jdoGetStateFlags() {
+        int flags = 0;
+        if (jdoIsPersistent()) flags |= STATE_PERSISTENT;
+        if (jdoIsTransactional()) flags |= STATE_TRANSACTIONAL;
+        if (jdoIsDirty()) flags |= STATE_DIRTY;
+        if (jdoIsNew()) flags |= STATE_NEW;
+        if (jdoIsDeleted()) flags |= STATE_DELETED;
+        if (jdoIsDetached()) flags |= STATE_DETACHED;
+        return flags;
+    }
     
     /** Return a new instance of this class, with the jdoStateManager set to the
      * parameter, and jdoFlags set to LOAD_REQUIRED.
@@ -43,6 +43,11 @@ public class RegisterClassEvent extends EventObject
     /** The types of managed fields of the persistence-capable class */
     protected Class[] fieldTypes;
 
+    /** The type codes of managed fields of the persistence-capable class
+     * @since 3.2
+     */
+    protected byte[] fieldTypeCodes;
+
     /** The flags of managed fields of the persistence-capable class */
     protected byte[] fieldFlags;
 
@@ -73,6 +78,31 @@ public class RegisterClassEvent extends EventObject
         this.persistenceCapableSuperclass = persistenceCapableSuperclass;
     }
 
+    /** 
+     * Constructs a new <code>RegisterClassEvent</code> with precomputed
+     * field type codes.
+     * @param helper the <code>JDOImplHelper</code> instance
+     * @param registeredClass the persistence-capable class
+     * @param fieldNames the names of the managed fields
+     * @param fieldTypes the types of the managed fields
+     * @param fieldTypeCodes the type codes of the managed fields
+     * @param fieldFlags the flags of the managed fields
+     * @param persistenceCapableSuperclass the persistence-capable superclass
+     * @since 3.2
+     **/
+    public RegisterClassEvent(JDOImplHelper helper,
+                              Class registeredClass, 
+                              String[] fieldNames, 
+                              Class[] fieldTypes,
+                              byte[] fieldTypeCodes,
+                              byte[] fieldFlags,
+                              Class persistenceCapableSuperclass)
+    {
+        this(helper, registeredClass, fieldNames, fieldTypes, fieldFlags,
+            persistenceCapableSuperclass);
+        this.fieldTypeCodes = fieldTypeCodes;
+    }
+
     /**
      * Returns the class object of the registered persistence-capable class.
      * @return the persistence-capable class.
@@ -100,6 +130,21 @@ public class RegisterClassEvent extends EventObject
         return fieldTypes;
     }
 
+    /**
+     * Returns the type codes of the managed field of the persistence-capable
+     * class.
+     * @see JDOImplHelper#getFieldTypeCodes(Class)
+     * @return the type codes of the managed fields
+     * @since 3.2
+     */
+    public byte[] getFieldTypeCodes()
+    {
+        if (fieldTypeCodes == null) {
+            fieldTypeCodes = JDOImplHelper.computeFieldTypeCodes(fieldTypes);
+        }
+        return fieldTypeCodes;
+    }
+
     /**
      * Returns the flags of the managed field of the persistence-capable class.
      * @return the flags of the managed fields
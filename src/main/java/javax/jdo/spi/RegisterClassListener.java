@@ -23,6 +23,7 @@
 package javax.jdo.spi;
 
 import java.util.EventListener;
+import java.util.List;
 
 /**
  * A "RegisterClassEvent" event gets fired whenever a persistence-capable class 
@@ -41,4 +42,21 @@ public interface RegisterClassListener
      * class plus metadata.
      */
     public void registerClass(RegisterClassEvent event);
+
+    /**
+     * This method gets called when several persistence-capable classes are
+     * registered at once, and when the listener is added to notify it of
+     * the classes registered before.
+     * The default implementation calls {@link #registerClass} for each
+     * event in turn; a listener can override it to process all classes
+     * in one pass.
+     * @param events the unmodifiable list of <code>RegisterClassEvent</code>
+     * instances, one per registered class
+     * @since 3.2
+     */
+    public default void registerClasses(List<RegisterClassEvent> events) {
+        for (RegisterClassEvent event : events) {
+            registerClass(event);
+        }
+    }
 }
@@ -164,6 +164,59 @@ public interface StateInterrogation {
      */
     Boolean isDetached (Object pc);
 
+    /** Return the lifecycle state of the parameter instance in a single
+     * call.
+     *
+     * Instances recognized by the implementation return the bitwise or of
+     * {@link PersistenceCapable#STATE_PERSISTENT},
+     * {@link PersistenceCapable#STATE_TRANSACTIONAL},
+     * {@link PersistenceCapable#STATE_DIRTY},
+     * {@link PersistenceCapable#STATE_NEW},
+     * {@link PersistenceCapable#STATE_DELETED} and
+     * {@link PersistenceCapable#STATE_DETACHED} for each of the
+     * corresponding <code>isXXX</code> methods that returns
+     * <code>Boolean.TRUE</code>.
+     *
+     * <P>Instances not recognized by the implementation return
+     * <code>null</code>.
+     *
+     * <P>The default implementation calls each of those methods in turn,
+     * so that implementations written before this method was added keep
+     * working.
+     *
+     * @see PersistenceCapable#jdoGetStateFlags()
+     * @param pc the instance.
+     * @return the state bits of the parameter instance, or
+     * <code>null</code> if it is not recognized.
+     * @since 3.2
+     */
+    default Integer getStateFlags (Object pc) {
+        Boolean persistent = isPersistent(pc);
+        Boolean transactional = isTransactional(pc);
+        Boolean dirty = isDirty(pc);
+        Boolean isNew = isNew(pc);
+        Boolean deleted = isDeleted(pc);
+        Boolean detached = isDetached(pc);
+        if (persistent == null && transactional == null && dirty == null
+                && isNew == null && deleted == null && detached == null) {
+            return null;
+        }
+        int flags = 0;
+        if (Boolean.TRUE.equals(persistent))
+            flags |= PersistenceCapable.STATE_PERSISTENT;
+        if (Boolean.TRUE.equals(transactional))
+            flags |= PersistenceCapable.STATE_TRANSACTIONAL;
+        if (Boolean.TRUE.equals(dirty))
+            flags |= PersistenceCapable.STATE_DIRTY;
+        if (Boolean.TRUE.equals(isNew))
+            flags |= PersistenceCapable.STATE_NEW;
+        if (Boolean.TRUE.equals(deleted))
+            flags |= PersistenceCapable.STATE_DELETED;
+        if (Boolean.TRUE.equals(detached))
+            flags |= PersistenceCapable.STATE_DETACHED;
+        return Integer.valueOf(flags);
+    }
+
     /** Return the associated <code>PersistenceManager</code> if there is one.
      * Transactional and persistent instances return the associated
      * <code>PersistenceManager</code>.  
@@ -125,6 +125,31 @@ public interface StateManager {
      * in the current transaction.
      */
     boolean isDeleted(PersistenceCapable pc);
+
+    /** Return the lifecycle state of this object in a single call.
+     * The result is the bitwise or of
+     * {@link PersistenceCapable#STATE_PERSISTENT},
+     * {@link PersistenceCapable#STATE_TRANSACTIONAL},
+     * {@link PersistenceCapable#STATE_DIRTY},
+     * {@link PersistenceCapable#STATE_NEW} and
+     * {@link PersistenceCapable#STATE_DELETED} for each of the
+     * corresponding <code>isXXX</code> methods that returns true.
+     * An instance with a <code>StateManager</code> is never detached.
+     * <P>The default implementation calls each of those methods in turn.
+     * @see PersistenceCapable#jdoGetStateFlags()
+     * @param pc the calling <code>PersistenceCapable</code> instance
+     * @return the state bits of this instance
+     * @since 3.2
+     */
+    default int getStateFlags(PersistenceCapable pc) {
+        int flags = 0;
+        if (isPersistent(pc)) flags |= PersistenceCapable.STATE_PERSISTENT;
+        if (isTransactional(pc)) flags |= PersistenceCapable.STATE_TRANSACTIONAL;
+        if (isDirty(pc)) flags |= PersistenceCapable.STATE_DIRTY;
+        if (isNew(pc)) flags |= PersistenceCapable.STATE_NEW;
+        if (isDeleted(pc)) flags |= PersistenceCapable.STATE_DELETED;
+        return flags;
+    }
     
     /** Return the <code>PersistenceManager</code> that owns this instance.
      * @param pc the calling <code>PersistenceCapable</code> instance
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for a phase of
+ * {@link JDOHelper#getPersistenceManagerFactory}. This class is only
+ * loaded if the JFR API is available, and is compiled apart from the Java 8
+ * sources, by the jfr build profile, on JDKs that provide that API.
+ * @see JDOBootstrapEvents
+ * @since 3.2
+ */
+@Name("javax.jdo.Bootstrap") //NOI18N
+@Label("JDO Bootstrap Phase") //NOI18N
+@Category("JDO") //NOI18N
+@Description("A phase of creating a PersistenceManagerFactory") //NOI18N
+@StackTrace(false)
+class JDOBootstrapEvent extends Event {
+
+    @Label("Phase") //NOI18N
+    String phase;
+
+    @Label("Factory Name") //NOI18N
+    String factoryName;
+
+    @Label("Class Loader") //NOI18N
+    String classLoader;
+
+    /**
+     * The recorder creating instances of this event.
+     */
+    static class JFRRecorder implements JDOBootstrapEvents.Recorder {
+
+        /** The event type, to check cheaply whether it is recorded. */
+        private final EventType eventType =
+            EventType.getEventType(JDOBootstrapEvent.class);
+
+        public Object begin() {
+            if (!eventType.isEnabled()) {
+                return null;
+            }
+            JDOBootstrapEvent event = new JDOBootstrapEvent();
+            event.begin();
+            return event;
+        }
+
+        public void end(Object started, String phase, String name,
+                ClassLoader loader) {
+            JDOBootstrapEvent event = (JDOBootstrapEvent) started;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase;
+                event.factoryName = name;
+                event.classLoader = loader == null ? null
+                    : loader.getClass().getName() + "@" //NOI18N
+                        + Integer.toHexString(System.identityHashCode(loader));
+                event.commit();
+            }
+        }
+    }
+}
@@ -16,11 +16,23 @@
  */
 package javax.jdo;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import javax.jdo.util.BatchTestRunner;
 
@@ -335,6 +347,248 @@ public class JDOHelperConfigTest extends AbstractJDOConfigTest implements Consta
         assertEqualProperties(expected, actual);
     }
 
+    public void testPositive08_CachedPropertiesAreCopied()
+        throws IOException {
+
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+                getClass().getClassLoader(), JDOCONFIG_CLASSPATH_PREFIX + "/Positive06/");
+
+        Map first = JDOHelper.getPropertiesFromJdoconfig(
+            ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME, loader);
+        first.put(PROPERTY_NAME, "modified");
+        Map second = JDOHelper.getPropertiesFromJdoconfig(
+            ANONYMOUS_PERSISTENCE_MANAGER_FACTORY_NAME, loader);
+
+        assertNotSame("Cached properties were not copied", first, second);
+        assertNull("Modification of returned properties changed the cache",
+            second.get(PROPERTY_NAME));
+    }
+
+    public void testPositive09_CachedPropertiesRefreshedWhenConfigModified()
+        throws IOException {
+
+        File dir = createTempDirectory();
+        File config = new File(dir, JDOCONFIG_RESOURCE_NAME);
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+                getClass().getClassLoader(), dir.getAbsolutePath());
+
+        writeJdoconfig(config, "url.positive09.value0");
+        Map actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("url.positive09.value0", actual.get(PROPERTY_CONNECTION_URL));
+
+        writeJdoconfig(config, "url.positive09.value1");
+        config.setLastModified(config.lastModified() + 10000);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Modified config was not read again",
+            "url.positive09.value1", actual.get(PROPERTY_CONNECTION_URL));
+
+        long lastModified = config.lastModified();
+        writeJdoconfig(config, "url.positive09.value2");
+        config.setLastModified(lastModified);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Unmodified config was read again",
+            "url.positive09.value1", actual.get(PROPERTY_CONNECTION_URL));
+
+        JDOHelper.clearJdoconfigCache(loader);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Cleared cache was not read again",
+            "url.positive09.value2", actual.get(PROPERTY_CONNECTION_URL));
+    }
+
+    public void testPositive10_StreamingReaderMatchesDOMReader()
+        throws IOException {
+
+        URL url = new File(JDOCONFIG_CLASSPATH_PREFIX
+            + "/Positive00/" + JDOCONFIG_RESOURCE_NAME).toURI().toURL();
+        Map all = JDOHelper.readNamedPMFProperties(url, null,
+            JDOHelper.getDefaultDocumentBuilderFactory());
+        for (int i = 0; i < 5; ++i) {
+            String name = PMF_ATTRIBUTE_NAME + ".positive00.pmf" + i;
+            Map streamed = JDOHelper.readRequestedPMFProperties(url, name);
+            assertEquals("Streaming reader returned other PMFs",
+                1, streamed.size());
+            assertEquals("Streaming reader differs from DOM reader for " + name,
+                all.get(name), streamed.get(name));
+        }
+        assertTrue("Streaming reader returned unrequested PMF",
+            JDOHelper.readRequestedPMFProperties(url, "name.unknown").isEmpty());
+    }
+
+    public void testPositive12_PrecompiledJdoconfigPreferred()
+        throws IOException {
+
+        File dir = createTempDirectory();
+        File config = new File(dir, JDOCONFIG_RESOURCE_NAME);
+        File precompiled = new File(dir, JDOCONFIG_RESOURCE_NAME
+            + JDOCONFIG_PRECOMPILED_RESOURCE_SUFFIX);
+        precompiled.deleteOnExit();
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+                getClass().getClassLoader(), dir.getAbsolutePath());
+
+        // compile the config, then change the precompiled value to tell
+        // which form is read
+        writeJdoconfig(config, "url.positive12.xml");
+        OutputStream out = new FileOutputStream(precompiled);
+        try {
+            JDOConfigCompiler.compile(config.toURI().toURL(), out);
+        } finally {
+            out.close();
+        }
+        replaceInFile(precompiled, "url.positive12.xml",
+            "url.positive12.precompiled");
+
+        Map actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Precompiled config was not used",
+            "url.positive12.precompiled", actual.get(PROPERTY_CONNECTION_URL));
+        assertEquals("name.positive09", actual.get(PROPERTY_NAME));
+
+        // a config copied with another time is checked by its digest
+        long lastModified = config.lastModified();
+        config.setLastModified(lastModified + 10000);
+        JDOHelper.clearJdoconfigCache(loader);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Precompiled config of copied config was not used",
+            "url.positive12.precompiled", actual.get(PROPERTY_CONNECTION_URL));
+
+        // a change that keeps the size and time is noticed
+        writeJdoconfig(config, "url.positive12.xmL");
+        config.setLastModified(lastModified);
+        JDOHelper.clearJdoconfigCache(loader);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Precompiled config of same size and time was used",
+            "url.positive12.xmL", actual.get(PROPERTY_CONNECTION_URL));
+
+        // a config changed after compiling is read as XML, even if it
+        // does not look newer than the precompiled form
+        writeJdoconfig(config, "url.positive12.changed");
+        config.setLastModified(precompiled.lastModified() - 10000);
+        JDOHelper.clearJdoconfigCache(loader);
+        actual = JDOHelper.getPropertiesFromJdoconfig("name.positive09", loader);
+        assertEquals("Outdated precompiled config was used",
+            "url.positive12.changed", actual.get(PROPERTY_CONNECTION_URL));
+    }
+
+    public void testPositive14_JDOConfigCompilerRunReturnsStatus()
+        throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals("Wrong status for missing arguments", 1,
+            JDOConfigCompiler.run(new String[0],
+                new PrintStream(out), new PrintStream(err)));
+        assertTrue("Usage not reported", err.size() > 0);
+
+        File dir = createTempDirectory();
+        File config = new File(dir, JDOCONFIG_RESOURCE_NAME);
+        File precompiled = new File(dir, "positive14.properties");
+        precompiled.deleteOnExit();
+        writeJdoconfig(config, "url.positive14.xml");
+        assertEquals("Wrong status for valid config", 0,
+            JDOConfigCompiler.run(new String[] {
+                    config.getPath(), precompiled.getPath()},
+                new PrintStream(out), new PrintStream(err)));
+        assertTrue("Precompiled config not written", precompiled.length() > 0);
+    }
+
+    private static void replaceInFile(File file, String target,
+            String replacement) throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()),
+            StandardCharsets.ISO_8859_1);
+        Files.write(file.toPath(), content.replace(target, replacement)
+            .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public void testPositive13_LastModifiedOnlyCheckedForFiles()
+        throws IOException {
+
+        File dir = createTempDirectory();
+        File config = new File(dir, JDOCONFIG_RESOURCE_NAME);
+        writeJdoconfig(config, "url.positive13.xml");
+        config.setLastModified(1000000000000L);
+        assertEquals("Wrong time of file URL", 1000000000000L,
+            JDOHelper.getLastModified(config.toURI().toURL()));
+
+        File jar = new File(dir, "positive13.jar");
+        jar.deleteOnExit();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry(JDOCONFIG_RESOURCE_NAME));
+            out.write(Files.readAllBytes(config.toPath()));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        jar.setLastModified(1100000000000L);
+        assertEquals("Wrong time of jar:file URL", 1100000000000L,
+            JDOHelper.getLastModified(new URL("jar:" + jar.toURI().toURL()
+                + "!/" + JDOCONFIG_RESOURCE_NAME)));
+
+        // other resources are treated as immutable without connecting
+        assertEquals("Wrong time of http URL", 0L,
+            JDOHelper.getLastModified(new URL(
+                "http://localhost:1/" + JDOCONFIG_RESOURCE_NAME)));
+    }
+
+    public void testPositive11_PMFViaServicesLookupRepeated()
+        throws IOException {
+
+        File dirA = createTempDirectory();
+        File dirB = createTempDirectory();
+        writeServicesFile(dirA, "javax.jdo.JDOHelperTest$BadPMFNoGetPMFMethod");
+        writeServicesFile(dirB, "javax.jdo.PMFService");
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+            getClass().getClassLoader(), dirA.getAbsolutePath(),
+            dirB.getAbsolutePath());
+
+        Map props = new HashMap();
+        for (int i = 0; i < 3; ++i) {
+            assertNotNull("No PMF found via services lookup",
+                JDOHelper.getPersistenceManagerFactory(null, props, loader));
+        }
+    }
+
+    protected File createTempDirectory() throws IOException {
+        File dir = File.createTempFile("jdoconfig", "");
+        dir.delete();
+        File metaInf = new File(dir, "META-INF");
+        metaInf.mkdirs();
+        dir.deleteOnExit();
+        metaInf.deleteOnExit();
+        return dir;
+    }
+
+    protected void writeServicesFile(File dir, String pmfClassName)
+        throws IOException {
+        File services = new File(dir, "META-INF/services");
+        services.mkdirs();
+        services.deleteOnExit();
+        File file = new File(services, "javax.jdo.PersistenceManagerFactory");
+        Writer writer = new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(pmfClassName + "\n");
+        } finally {
+            writer.close();
+        }
+        file.deleteOnExit();
+    }
+
+    protected void writeJdoconfig(File config, String connectionURL)
+        throws IOException {
+        Writer writer = new OutputStreamWriter(
+            new FileOutputStream(config), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<jdoconfig xmlns=\"http://xmlns.jcp.org/xml/ns/jdo/jdoconfig\">\n"
+                + "    <persistence-manager-factory name=\"name.positive09\"\n"
+                + "        connection-url=\"" + connectionURL + "\"/>\n"
+                + "</jdoconfig>\n");
+        } finally {
+            writer.close();
+        }
+        config.deleteOnExit();
+    }
+
     public void testNegative00_EmptyJDOConfigXML() throws IOException {
         try {
             URLClassLoader loader = new JDOConfigTestClassLoader(
@@ -453,27 +707,65 @@ public class JDOHelperConfigTest extends AbstractJDOConfigTest implements Consta
         // no class name in Negative09/jdoconfig.xml
         // 9a and 9b include services/javax.jdo.PersistenceManagerFactory
         // with bad implementations
-        try {
-            URLClassLoader loader = new JDOConfigTestClassLoader(
-                getClass().getClassLoader(), JDOCONFIG_CLASSPATH_PREFIX + "/Negative09/9a/", 
-                JDOCONFIG_CLASSPATH_PREFIX + "/Negative09/9b/", TEST_CLASSPATH, API_CLASSPATH);
-            JDOHelper.getPersistenceManagerFactory("name.negative09", loader);
-            fail("JDOHelper failed to throw JDOFatalUserException");
-        } catch (JDOFatalException x) {
-            Throwable[] nestedExceptions = x.getNestedExceptions();
-            if (nestedExceptions.length != 2) {
-                appendMessage("JDOHelper.getPersistenceManagerFactory wrong number of "
-                    + "nested exceptions. Expected 2, got "
-                    + nestedExceptions.length + "\n" + x);
-            }
-            for (int i = 0; i < nestedExceptions.length; ++i) {
-                Throwable exception = nestedExceptions[i];
-                if (!(exception instanceof JDOFatalException)) {
-                    appendMessage("Nested exception " + exception.getClass().getName()
-                        + " is not a JDOFatalException.");
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+            getClass().getClassLoader(), JDOCONFIG_CLASSPATH_PREFIX + "/Negative09/9a/", 
+            JDOCONFIG_CLASSPATH_PREFIX + "/Negative09/9b/", TEST_CLASSPATH, API_CLASSPATH);
+        // the second lookup uses the cached services lookup
+        for (int i = 0; i < 2; ++i) {
+            try {
+                JDOHelper.getPersistenceManagerFactory("name.negative09", loader);
+                fail("JDOHelper failed to throw JDOFatalUserException");
+            } catch (JDOFatalException x) {
+                Throwable[] nestedExceptions = x.getNestedExceptions();
+                if (nestedExceptions.length != 2) {
+                    appendMessage("JDOHelper.getPersistenceManagerFactory wrong number of "
+                        + "nested exceptions. Expected 2, got "
+                        + nestedExceptions.length + "\n" + x);
+                }
+                for (int j = 0; j < nestedExceptions.length; ++j) {
+                    Throwable exception = nestedExceptions[j];
+                    if (!(exception instanceof JDOFatalException)) {
+                        appendMessage("Nested exception " + exception.getClass().getName()
+                            + " is not a JDOFatalException.");
+                    }
                 }
             }
         }
         failOnError();
     }
+
+    public void testNegative10_PropertyElementWithoutValue()
+        throws IOException {
+
+        File dir = createTempDirectory();
+        File config = new File(dir, JDOCONFIG_RESOURCE_NAME);
+        Writer writer = new OutputStreamWriter(
+            new FileOutputStream(config), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<jdoconfig xmlns=\"http://xmlns.jcp.org/xml/ns/jdo/jdoconfig\">\n"
+                + "    <persistence-manager-factory name=\"name.negative10\">\n"
+                + "        <property name=\"property.negative10\"/>\n"
+                + "    </persistence-manager-factory>\n"
+                + "</jdoconfig>\n");
+        } finally {
+            writer.close();
+        }
+        config.deleteOnExit();
+        URL url = config.toURI().toURL();
+
+        try {
+            JDOHelper.readNamedPMFProperties(url, "name.negative10",
+                JDOHelper.getDefaultDocumentBuilderFactory());
+            fail("DOM reader failed to throw JDOFatalUserException");
+        } catch (JDOFatalUserException x) {
+            // sunny day
+        }
+        try {
+            JDOHelper.readRequestedPMFProperties(url, "name.negative10");
+            fail("Streaming reader failed to throw JDOFatalUserException");
+        } catch (JDOFatalUserException x) {
+            // sunny day
+        }
+    }
 }
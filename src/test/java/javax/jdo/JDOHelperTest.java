@@ -470,6 +470,14 @@ public class JDOHelperTest extends AbstractTest {
         }
     }
 
+    /** Test that repeated lookups of a bad PMF class report the same 
+     * exception, after the class has been cached.
+     */
+    public void testBadPMFNoGetPMFPropertiesMethodRepeated() {
+        testBadPMFNoGetPMFPropertiesMethod();
+        testBadPMFNoGetPMFPropertiesMethod();
+    }
+
     /** Test bad PMF class non-static getPMF method.
      */
     public void testBadPMFNonStaticGetPMFMethod() {
@@ -486,6 +494,32 @@ public class JDOHelperTest extends AbstractTest {
         }
     }
 
+    /** Test that repeated lookups of a PMF class with a non-static getPMF
+     * method report the same exception, caused by a NullPointerException
+     * as with reflective invocation, after the class has been cached.
+     */
+    public void testBadPMFNonStaticGetPMFMethodRepeated() {
+        String first = getBadPMFNonStaticGetPMFMethodMessage();
+        assertEquals("Repeated lookup reported a different exception", 
+            first, getBadPMFNonStaticGetPMFMethodMessage());
+    }
+
+    private String getBadPMFNonStaticGetPMFMethodMessage() {
+        Properties props = new Properties();
+        props.put("javax.jdo.PersistenceManagerFactoryClass", 
+                "javax.jdo.JDOHelperTest$BadPMFNonStaticGetPMFMethod");
+        try {
+            JDOHelper.getPersistenceManagerFactory(props);
+            fail("Bad PersistenceManagerFactoryClass should result in JDOFatalInternalException ");
+            return null;
+        }
+        catch (JDOFatalInternalException ex) {
+            assertTrue("Wrong nested exception " + ex.getCause(), 
+                ex.getCause() instanceof NullPointerException);
+            return ex.getMessage();
+        }
+    }
+
     /** Test bad PMF class doesn't implement PMF.
      */
     public void testBadPMFWrongReturnType() {
@@ -66,6 +66,10 @@ public class ObjectStateTest extends AbstractTest {
             PersistenceCapable.class,
             "jdoIsDetached",
             null);
+    private static final Method jdoGetStateFlags = getDeclaredMethod(
+            PersistenceCapable.class,
+            "jdoGetStateFlags",
+            null);
 
     /** */
     public static void main(String args[]) {
@@ -209,6 +213,9 @@ public class ObjectStateTest extends AbstractTest {
             if (method.equals(jdoIsDetached)) {
                 return (0 != (states & DETACHED));
             }
+            if (method.equals(jdoGetStateFlags)) {
+                return states;
+            }
             fail("Unexpected method called: " + method.getName());
             return Boolean.FALSE; // not reached
         }
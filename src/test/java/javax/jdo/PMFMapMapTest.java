@@ -22,10 +22,26 @@ import java.io.File;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
 import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import junit.framework.TestSuite;
 
+import javax.jdo.stub.StubPMF;
 import javax.jdo.util.BatchTestRunner;
 
 /**
@@ -489,4 +505,343 @@ public class PMFMapMapTest extends AbstractJDOConfigTest {
                     + ".  Expected: \"" + expectedDriverName4NamedPMF + "\"");
         }
     }
+
+    /*
+     * static PersistenceManagerFactory getOrCreatePersistenceManagerFactory(
+     * java.lang.String name, java.lang.ClassLoader loader) Returns the same
+     * live PersistenceManagerFactory until it is closed.
+     */
+    public void testGetOrCreateNamedPMF() throws IOException {
+
+        setupResourceClassLoader(resourceDir);
+
+        PersistenceManagerFactory first =
+            JDOHelper.getOrCreatePersistenceManagerFactory(PMFName,
+                    resourceClassLoader);
+        PersistenceManagerFactory second =
+            JDOHelper.getOrCreatePersistenceManagerFactory(PMFName,
+                    resourceClassLoader);
+        assertSame("Expected the registered PMF to be reused", first, second);
+        assertEquals(expectedDriverName4NamedPMF,
+                first.getConnectionDriverName());
+
+        first.close();
+        PersistenceManagerFactory third =
+            JDOHelper.getOrCreatePersistenceManagerFactory(PMFName,
+                    resourceClassLoader);
+        assertNotSame("Expected a new PMF after close", first, third);
+        assertFalse(third.isClosed());
+    }
+
+    /*
+     * static PersistenceManagerFactory getOrCreatePersistenceManagerFactory(
+     * java.util.Map<?,?> overrides, java.lang.String name,
+     * java.lang.ClassLoader loader) Distinguishes factories by overrides.
+     */
+    public void testGetOrCreateNamedPMFWithOverrides() throws IOException {
+        overrides = new Properties();
+        overrides.setProperty(PROPERTY_CONNECTION_DRIVER_NAME,
+                expectedDriverNameWithOverrides);
+
+        setupResourceClassLoader(resourceDir);
+
+        PersistenceManagerFactory plain =
+            JDOHelper.getOrCreatePersistenceManagerFactory(PMFName,
+                    resourceClassLoader);
+        PersistenceManagerFactory overridden =
+            JDOHelper.getOrCreatePersistenceManagerFactory(overrides, PMFName,
+                    resourceClassLoader);
+        assertNotSame(plain, overridden);
+        assertEquals(expectedDriverNameWithOverrides,
+                overridden.getConnectionDriverName());
+
+        Properties equalOverrides = new Properties();
+        equalOverrides.putAll(overrides);
+        assertSame(overridden,
+            JDOHelper.getOrCreatePersistenceManagerFactory(equalOverrides,
+                    PMFName, resourceClassLoader));
+    }
+
+    /*
+     * A caller that finds the registered PersistenceManagerFactory closed
+     * and creates it again is not overtaken by a concurrent caller, so that
+     * both get the same factory.
+     */
+    public void testGetOrCreateNamedPMFWhileRecreating() throws Exception {
+
+        setupResourceClassLoader(resourceDir);
+        final CountDownLatch firstCreating = new CountDownLatch(1);
+        final CountDownLatch firstRelease = new CountDownLatch(1);
+        final CountDownLatch secondCreating = new CountDownLatch(1);
+        final CountDownLatch secondRelease = new CountDownLatch(1);
+        final AtomicInteger creations = new AtomicInteger();
+        final Map<Object, Object> gate = new HashMap<Object, Object>();
+        gate.put(StubPMF.PROPERTY_ON_CREATE,
+                new Consumer<PersistenceManagerFactory>() {
+            public void accept(PersistenceManagerFactory pmf) {
+                try {
+                    switch (creations.incrementAndGet()) {
+                    case 1:
+                        firstCreating.countDown();
+                        firstRelease.await();
+                        // closed before the waiting caller gets the entry
+                        pmf.close();
+                        break;
+                    case 2:
+                        secondCreating.countDown();
+                        secondRelease.await();
+                        break;
+                    default:
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        GetOrCreate first = new GetOrCreate(gate);
+        first.start();
+        firstCreating.await();
+        // the second caller waits for the first creation
+        GetOrCreate second = new GetOrCreate(gate);
+        second.start();
+        awaitBlockedOrTerminated(second, first);
+        firstRelease.countDown();
+        first.join();
+        assertTrue(first.pmf.isClosed());
+        // the second caller finds the factory closed and creates it again
+        secondCreating.await();
+        // the third caller must not prune the entry being created again
+        GetOrCreate third = new GetOrCreate(gate);
+        third.start();
+        awaitBlockedOrTerminated(third, second);
+        secondRelease.countDown();
+        second.join();
+        third.join();
+
+        assertNotNull(second.pmf);
+        assertSame("Expected the factory created again to be shared",
+            second.pmf, third.pmf);
+        assertEquals("Expected a single creation after close", 2,
+            creations.get());
+        assertSame(second.pmf, JDOHelper.getOrCreatePersistenceManagerFactory(
+            gate, PMFName, resourceClassLoader));
+    }
+
+    /**
+     * Wait until the thread is blocked on a monitor held by the owner, or
+     * has terminated.
+     */
+    void awaitBlockedOrTerminated(Thread thread, Thread owner)
+            throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (;;) {
+            ThreadInfo info = threads.getThreadInfo(thread.getId());
+            if (info == null
+                    || info.getThreadState() == Thread.State.TERMINATED
+                    || (info.getThreadState() == Thread.State.BLOCKED
+                        && info.getLockOwnerId() == owner.getId())) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    class GetOrCreate extends Thread {
+        final Map<Object, Object> overrides;
+        volatile PersistenceManagerFactory pmf;
+
+        GetOrCreate(Map<Object, Object> overrides) {
+            this.overrides = overrides;
+        }
+
+        public void run() {
+            pmf = JDOHelper.getOrCreatePersistenceManagerFactory(overrides,
+                PMFName, resourceClassLoader);
+        }
+    }
+
+    /*
+     * The class loader of a closed PersistenceManagerFactory is no longer
+     * referenced by the registry once the registry is consulted again.
+     */
+    public void testGetOrCreateNamedPMFReleasesLoaderWhenClosed()
+            throws Exception {
+
+        setupResourceClassLoader(resourceDir);
+        WeakReference<ClassLoader> loader = getOrCreateAndClose(resourceDir);
+        // consulting the registry for another loader forgets the factory
+        JDOHelper.getOrCreatePersistenceManagerFactory(PMFName,
+                resourceClassLoader);
+        assertCollected("Loader of closed PMF still referenced", loader);
+    }
+
+    /*
+     * The class loader of a PersistenceManagerFactory that cannot be created
+     * is not referenced by the registry.
+     */
+    public void testGetOrCreateNamedPMFReleasesLoaderWhenFailed()
+            throws Exception {
+
+        WeakReference<ClassLoader> loader = getOrCreateFailing(propsDir);
+        assertCollected("Loader of failed PMF still referenced", loader);
+    }
+
+    WeakReference<ClassLoader> getOrCreateAndClose(String dir)
+            throws IOException {
+        ClassLoader loader = new JDOConfigTestClassLoader(
+            getClass().getClassLoader(), JDOCONFIG_CLASSPATH_PREFIX + dir);
+        JDOHelper.getOrCreatePersistenceManagerFactory(
+            referencing(loader), PMFName, loader).close();
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    WeakReference<ClassLoader> getOrCreateFailing(String dir)
+            throws IOException {
+        ClassLoader loader = new JDOConfigTestClassLoader(
+            getClass().getClassLoader(), JDOCONFIG_CLASSPATH_PREFIX + dir);
+        try {
+            // no anonymous PMF is configured in the directory
+            JDOHelper.getOrCreatePersistenceManagerFactory(
+                referencing(loader), "", loader);
+            fail("Expected failure for the unconfigured anonymous PMF");
+        } catch (JDOFatalUserException ex) {
+            // expected
+        }
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /**
+     * Overrides that reference the loader from the factory, as the
+     * factories of an implementation do.
+     */
+    Map<Object, Object> referencing(final ClassLoader loader) {
+        Map<Object, Object> overrides = new HashMap<Object, Object>();
+        overrides.put(StubPMF.PROPERTY_ON_CLOSE, new Runnable() {
+            public void run() {
+                loader.getParent();
+            }
+        });
+        return overrides;
+    }
+
+    void assertCollected(String message, WeakReference<?> ref)
+            throws InterruptedException {
+        for (int i = 0; i < 100 && ref.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(message, ref.get());
+    }
+
+    /*
+     * static CompletableFuture<Map<String, PersistenceManagerFactory>>
+     * getPersistenceManagerFactories(java.util.Map<?,?> overrides,
+     * java.util.Collection<String> names, java.lang.ClassLoader resourceLoader,
+     * java.lang.ClassLoader pmfLoader, java.util.concurrent.Executor executor)
+     * Returns the named PersistenceManagerFactories created in parallel.
+     */
+    public void testNamedPMFsInParallel() throws Exception {
+
+        setupResourceClassLoader(resourceDir);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Map<String, PersistenceManagerFactory> pmfs =
+                JDOHelper.getPersistenceManagerFactories(null,
+                    Arrays.asList(PMFName, ""), resourceClassLoader,
+                    resourceClassLoader, executor).get();
+
+            assertEquals(2, pmfs.size());
+            assertEquals(expectedDriverName4NamedPMF,
+                    pmfs.get(PMFName).getConnectionDriverName());
+            assertEquals(expectedDriverName,
+                    pmfs.get("").getConnectionDriverName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * The future of several PersistenceManagerFactories fails if one of
+     * them cannot be created.
+     */
+    public void testNamedPMFsInParallelFailure() throws Exception {
+
+        setupResourceClassLoader(resourceDir);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            JDOHelper.getPersistenceManagerFactories(null,
+                Arrays.asList(PMFName, "NoSuchPMF"), resourceClassLoader,
+                resourceClassLoader, executor).get();
+            fail("Expected failure for an unknown PMF name");
+        } catch (ExecutionException ex) {
+            assertTrue("Unexpected cause: " + ex.getCause(),
+                ex.getCause() instanceof JDOFatalUserException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * No PersistenceManagerFactory is created if the configuration of one
+     * of the names cannot be found.
+     */
+    public void testNamedPMFsInParallelMissingConfiguration()
+            throws Exception {
+
+        setupResourceClassLoader(propsDir);
+        final AtomicInteger submitted = new AtomicInteger();
+        Executor executor = new Executor() {
+            public void execute(Runnable task) {
+                submitted.incrementAndGet();
+                task.run();
+            }
+        };
+        try {
+            JDOHelper.getPersistenceManagerFactories(null,
+                Arrays.asList(propertiesFile, ""), resourceClassLoader,
+                resourceClassLoader, executor).get();
+            fail("Expected failure for the unconfigured anonymous PMF");
+        } catch (ExecutionException ex) {
+            assertTrue("Unexpected cause: " + ex.getCause(),
+                ex.getCause() instanceof JDOFatalUserException);
+        }
+        assertEquals("Expected no factory to be created", 0, submitted.get());
+    }
+
+    /*
+     * The PersistenceManagerFactories that were submitted are closed if the
+     * executor rejects a later one.
+     */
+    public void testNamedPMFsInParallelRejected() throws Exception {
+
+        setupResourceClassLoader(resourceDir);
+        final AtomicInteger closed = new AtomicInteger();
+        Map<Object, Object> closeCounter = new HashMap<Object, Object>();
+        closeCounter.put(StubPMF.PROPERTY_ON_CLOSE, new Runnable() {
+            public void run() {
+                closed.incrementAndGet();
+            }
+        });
+        Executor executor = new Executor() {
+            private boolean ran;
+            public void execute(Runnable task) {
+                if (ran) {
+                    throw new RejectedExecutionException();
+                }
+                ran = true;
+                task.run();
+            }
+        };
+        try {
+            JDOHelper.getPersistenceManagerFactories(closeCounter,
+                Arrays.asList(PMFName, ""), resourceClassLoader,
+                resourceClassLoader, executor).get();
+            fail("Expected failure for the rejected PMF");
+        } catch (ExecutionException ex) {
+            assertTrue("Unexpected cause: " + ex.getCause(),
+                ex.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals("Expected the created factory to be closed", 1,
+            closed.get());
+    }
 }
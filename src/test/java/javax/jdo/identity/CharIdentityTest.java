@@ -146,4 +146,17 @@ public class CharIdentityTest extends SingleFieldIdentityTest {
         assertTrue("Not equal CharIdentity instances have wrong compareTo result", c3.compareTo(c1) > 0); 
         assertTrue("Not equal CharIdentity instances have wrong compareTo result", c1.compareTo(c4) > 0);
     }
+
+    public void testParse() {
+        CharIdentity c1 = CharIdentity.parse(Object.class, "abc", 1, 2);
+        assertEquals("Wrong parsed key.", 'b', c1.getKey());
+        assertEquals("Wrong appended form.", "b", 
+            c1.appendTo(new StringBuilder()).toString());
+        try {
+            CharIdentity.parse(Object.class, "abc", 1, 3);
+        } catch (IllegalArgumentException ex) {
+            return; // good
+        }
+        fail ("No exception caught for illegal String.");
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * IdentityCodecTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import java.math.BigDecimal;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.jdo.JDOUserException;
+
+import javax.jdo.util.AbstractTest;
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class IdentityCodecTest extends AbstractTest {
+    
+    /** Creates a new instance of IdentityCodecTest */
+    public IdentityCodecTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(IdentityCodecTest.class);
+    }
+    
+    public void testRoundTrip() {
+        List<SingleFieldIdentity> identities = Arrays.asList(
+            new ByteIdentity(Object.class, (byte)-1),
+            new CharIdentity(Object.class, '\u20ac'),
+            new ShortIdentity(String.class, Short.MIN_VALUE),
+            new IntIdentity(Object.class, -1),
+            new LongIdentity(Object.class, Long.MAX_VALUE),
+            new LongIdentity(String.class, Long.MIN_VALUE),
+            new StringIdentity(Object.class, "key \u00e9"),
+            new UUIDIdentity(Object.class, -1L, Long.MIN_VALUE),
+            new LongPairIdentity(String.class, -7L, 0x100000000L),
+            new ObjectIdentity(Object.class, new BigDecimal("1.5")),
+            new ObjectIdentity(Object.class, 
+                "java.lang.String:java.lang.Integer:5"));
+        byte[] encoded = IdentityCodec.encode(identities);
+        List<SingleFieldIdentity> decoded = IdentityCodec.decode(
+            ByteBuffer.wrap(encoded), getClass().getClassLoader());
+        assertEquals("Decoded identities not equal", identities, decoded);
+        for (int i = 0; i < identities.size(); ++i) {
+            assertEquals("Decoded identity has wrong hash code", 
+                identities.get(i).hashCode(), decoded.get(i).hashCode());
+        }
+    }
+
+    public void testDecoderFromPosition() {
+        IdentityCodec.Encoder encoder = new IdentityCodec.Encoder();
+        encoder.write(new LongIdentity(Object.class, 1L));
+        encoder.write(new LongIdentity(Object.class, 2L));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoder.size() + 1);
+        buffer.put((byte)0);
+        buffer.put(encoder.toByteArray());
+        buffer.flip();
+        buffer.get();
+        IdentityCodec.Decoder decoder = new IdentityCodec.Decoder(buffer, 
+            getClass().getClassLoader());
+        assertEquals(new LongIdentity(Object.class, 1L), decoder.read());
+        assertEquals(new LongIdentity(Object.class, 2L), decoder.read());
+        assertFalse("Decoder has remaining bytes", decoder.hasRemaining());
+    }
+
+    public void testSmallerThanExternalizable() throws Exception {
+        List<SingleFieldIdentity> identities = 
+            new ArrayList<SingleFieldIdentity>();
+        for (long key = 0; key < 1000; ++key) {
+            identities.add(new LongIdentity(IdentityCodecTest.class, key));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (SingleFieldIdentity identity : identities) {
+            identity.writeExternal(out);
+        }
+        out.close();
+        int encodedSize = IdentityCodec.encode(identities).length;
+        assertTrue("Encoded size " + encodedSize + 
+            " not smaller than externalized size " + bytes.size(),
+            encodedSize * 4 < bytes.size());
+    }
+
+    public void testUnsupportedType() {
+        try {
+            IdentityCodec.encode(Arrays.asList(
+                new ConcreteTestIdentity(Object.class)));
+        } catch (JDOUserException ex) {
+            return;
+        }
+        fail("Failed to catch expected JDOUserException.");
+    }
+
+    public void testCorrupt() {
+        byte[] encoded = IdentityCodec.encode(Arrays.asList(
+            new StringIdentity(Object.class, "key")));
+        try {
+            IdentityCodec.decode(
+                ByteBuffer.wrap(encoded, 0, encoded.length - 1), 
+                getClass().getClassLoader());
+        } catch (JDOUserException ex) {
+            return;
+        }
+        fail("Failed to catch expected JDOUserException.");
+    }
+
+    public void testCorruptNegativeVarLong() {
+        byte[] negative = {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+            (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x01};
+        // a negative class number
+        byte[] encoded = new byte[1 + negative.length];
+        encoded[0] = IdentityCodec.TYPE_LONG;
+        System.arraycopy(negative, 0, encoded, 1, negative.length);
+        assertCorrupt(encoded);
+        // a negative length of a class name
+        encoded = new byte[2 + negative.length];
+        encoded[0] = IdentityCodec.TYPE_LONG;
+        System.arraycopy(negative, 0, encoded, 2, negative.length);
+        assertCorrupt(encoded);
+    }
+
+    public void testKeyClassFilter() {
+        byte[] encoded = IdentityCodec.encode(Arrays.asList(
+            new ObjectIdentity(Object.class, new BigDecimal("1.5"))));
+        try {
+            IdentityCodec.decode(ByteBuffer.wrap(encoded), 
+                getClass().getClassLoader(), new Predicate<String>() {
+                    public boolean test(String name) {
+                        return !name.equals("java.math.BigDecimal");
+                    }
+                });
+            fail("Failed to catch expected JDOUserException.");
+        } catch (JDOUserException ex) {
+            // expected
+        }
+        List<SingleFieldIdentity> decoded = IdentityCodec.decode(
+            ByteBuffer.wrap(encoded), getClass().getClassLoader(), 
+            new Predicate<String>() {
+                public boolean test(String name) {
+                    return name.startsWith("java.");
+                }
+            });
+        assertEquals("Wrong decoded key", new BigDecimal("1.5"), 
+            ((ObjectIdentity)decoded.get(0)).getKey());
+    }
+
+    public void testCorruptOutOfRange() {
+        // a long key decoded as a key of a narrower type
+        assertCorrupt(retype(1L << 40, IdentityCodec.TYPE_INT));
+        assertCorrupt(retype(-40000L, IdentityCodec.TYPE_SHORT));
+        assertCorrupt(retype(40000L, IdentityCodec.TYPE_SHORT));
+        assertCorrupt(retype(40000L, IdentityCodec.TYPE_CHAR));
+    }
+
+    private static byte[] retype(long key, byte type) {
+        byte[] encoded = IdentityCodec.encode(Arrays.asList(
+            new LongIdentity(Object.class, key)));
+        encoded[0] = type;
+        return encoded;
+    }
+
+    private void assertCorrupt(byte[] encoded) {
+        try {
+            IdentityCodec.decode(ByteBuffer.wrap(encoded), 
+                getClass().getClassLoader());
+        } catch (JDOUserException ex) {
+            return;
+        }
+        fail("Failed to catch expected JDOUserException.");
+    }
+}
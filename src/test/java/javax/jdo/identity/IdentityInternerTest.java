@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * IdentityInternerTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import javax.jdo.util.AbstractTest;
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class IdentityInternerTest extends AbstractTest {
+    
+    /** Creates a new instance of IdentityInternerTest */
+    public IdentityInternerTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(IdentityInternerTest.class);
+    }
+    
+    public void testLongIdentity() {
+        LongIdentity c1 = IdentityInterner.of(Object.class, 1L);
+        LongIdentity c2 = IdentityInterner.of(Object.class, 1L);
+        LongIdentity c3 = IdentityInterner.of(Object.class, 2L);
+        assertSame("Equal LongIdentity instances not interned.", c1, c2);
+        assertEquals("Interned LongIdentity not equal to new instance.", 
+                new LongIdentity(Object.class, 1L), c1);
+        assertFalse("Not equal LongIdentity instances compare equal", 
+                c1.equals(c3));
+    }
+
+    public void testIntIdentity() {
+        IntIdentity c1 = IdentityInterner.of(Object.class, 1);
+        IntIdentity c2 = IdentityInterner.of(Object.class, 1);
+        assertSame("Equal IntIdentity instances not interned.", c1, c2);
+        assertEquals("Interned IntIdentity not equal to new instance.", 
+                new IntIdentity(Object.class, 1), c1);
+    }
+
+    public void testStringIdentity() {
+        StringIdentity c1 = IdentityInterner.of(Object.class, "key");
+        StringIdentity c2 = IdentityInterner.of(Object.class, new String("key"));
+        assertSame("Equal StringIdentity instances not interned.", c1, c2);
+        assertEquals("Interned StringIdentity not equal to new instance.", 
+                new StringIdentity(Object.class, "key"), c1);
+    }
+
+    public void testDifferentClasses() {
+        LongIdentity c1 = IdentityInterner.of(Object.class, 1L);
+        LongIdentity c2 = IdentityInterner.of(String.class, 1L);
+        assertFalse("Identities of different classes compare equal", 
+                c1.equals(c2));
+        assertEquals("Wrong target class", String.class, c2.getTargetClass());
+    }
+
+    public void testIntern() {
+        ByteIdentity c1 = IdentityInterner.intern(
+                new ByteIdentity(Object.class, (byte)1));
+        ByteIdentity c2 = IdentityInterner.intern(
+                new ByteIdentity(Object.class, (byte)1));
+        assertSame("Equal ByteIdentity instances not interned.", c1, c2);
+    }
+
+    public void testClear() {
+        LongIdentity c1 = IdentityInterner.of(Object.class, 1L);
+        IdentityInterner.clear(Object.class);
+        LongIdentity c2 = IdentityInterner.of(Object.class, 1L);
+        assertNotSame("Identity still interned after clear.", c1, c2);
+        assertEquals("Equal LongIdentity instances compare not equal.", 
+                c1, c2);
+    }
+}
@@ -136,4 +136,18 @@ public class IntIdentityTest extends SingleFieldIdentityTest {
         assertTrue("Not equal IntIdentity instances have wrong compareTo result", c3.compareTo(c1) > 0); 
         assertTrue("Not equal IntIdentity instances have wrong compareTo result", c1.compareTo(c4) > 0);
     }
+
+    public void testParse() {
+        String s = "key=" + Integer.MIN_VALUE;
+        IntIdentity c1 = IntIdentity.parse(Object.class, s, 4, s.length());
+        assertEquals("Wrong parsed key.", Integer.MIN_VALUE, c1.getKey());
+        assertEquals("Wrong appended form.", s, 
+            c1.appendTo(new StringBuilder("key=")).toString());
+        try {
+            IntIdentity.parse(Object.class, "2147483648", 0, 10);
+        } catch (NumberFormatException ex) {
+            return; // good
+        }
+        fail ("No exception caught for illegal String.");
+    }
 }
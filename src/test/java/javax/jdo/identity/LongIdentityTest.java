@@ -22,6 +22,11 @@
 
 package javax.jdo.identity;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
+import java.util.concurrent.CountDownLatch;
+
 import javax.jdo.JDONullIdentityException;
 
 import javax.jdo.util.BatchTestRunner;
@@ -111,6 +116,49 @@ public class LongIdentityTest extends SingleFieldIdentityTest {
         assertEquals("keyAsObject doesn't match.", c1.getKeyAsObject(), new Long(1L));
     }
 
+    public void testCompareToSerialized() {
+        LongIdentity c1 = new LongIdentity(Object.class, 1);
+        LongIdentity c2 = new LongIdentity(Class.class, 1);
+        Object[] scis = writeReadSerialized(new Object[]{c1, c2});
+        LongIdentity sc1 = (LongIdentity)scis[0];
+        LongIdentity sc2 = (LongIdentity)scis[1];
+        assertEquals("Equal LongIdentity instances compare not equal.", 0, sc1.compareTo(c1));
+        assertEquals("Equal LongIdentity instances compare not equal.", 0, c2.compareTo(sc2));
+        assertTrue("Not equal LongIdentity instances have wrong compareTo result", sc1.compareTo(sc2) > 0);
+        assertTrue("Not equal LongIdentity instances have wrong compareTo result", c2.compareTo(sc1) < 0);
+        assertFalse("Not equal LongIdentity instances compare equal.", sc1.equals(sc2));
+        assertFalse("Not equal LongIdentity instances compare equal.", c1.equals(sc2));
+    }
+
+    public void testGetKeyAsObjectConcurrent() throws Exception {
+        final LongIdentity c1 = new LongIdentity(Object.class, 1000L);
+        final Object[] keys = new Object[8];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[keys.length];
+        for (int i = 0; i < threads.length; ++i) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    keys[index] = c1.getKeyAsObject();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i].join();
+            assertEquals("keyAsObject doesn't match.", 
+                Long.valueOf(1000L), keys[i]);
+        }
+        assertSame("keyAsObject not stored.", 
+            c1.getKeyAsObject(), c1.getKeyAsObject());
+    }
+
     public void testBadConstructorNullShortParam() {
         try {
             new LongIdentity(Object.class, (Long)null);
@@ -141,4 +189,36 @@ public class LongIdentityTest extends SingleFieldIdentityTest {
         assertTrue("Not equal LongIdentity instances have wrong compareTo result", c1.compareTo(c4) > 0);
         assertTrue("Not equal LongIdentity instances have wrong compareTo result", c5.compareTo(c1) > 0);
     }
+
+    public void testAppendTo() throws IOException {
+        long[] keys = {0, 7, -7, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long key : keys) {
+            LongIdentity c1 = new LongIdentity(Object.class, key);
+            StringWriter out = new StringWriter();
+            c1.appendTo((Appendable)out);
+            assertEquals("Wrong appended form.", c1.toString(), out.toString());
+            assertEquals("Wrong appended form.", "[" + c1 + "]", 
+                c1.appendTo(new StringBuilder("[")).append(']').toString());
+        }
+    }
+
+    public void testParse() {
+        String s = "x-1234567890123, " + Long.MIN_VALUE + ";+5";
+        LongIdentity c1 = LongIdentity.parse(Object.class, s, 1, 15);
+        assertEquals("Wrong parsed key.", -1234567890123L, c1.getKey());
+        int start = s.indexOf(' ') + 1;
+        LongIdentity c2 = LongIdentity.parse(Object.class, s, start, s.indexOf(';'));
+        assertEquals("Wrong parsed key.", Long.MIN_VALUE, c2.getKey());
+        LongIdentity c3 = LongIdentity.parse(Object.class, s, s.length() - 2, s.length());
+        assertEquals("Wrong parsed key.", new LongIdentity(Object.class, 5), c3);
+        String[] illegal = {"", "-", "1a", "9223372036854775808", "-9223372036854775809"};
+        for (String str : illegal) {
+            try {
+                LongIdentity.parse(Object.class, str, 0, str.length());
+                fail ("No exception caught for illegal String " + str);
+            } catch (NumberFormatException ex) {
+                // good
+            }
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * LongPairIdentityTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import javax.jdo.JDONullIdentityException;
+
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class LongPairIdentityTest extends SingleFieldIdentityTest {
+    
+    /** Creates a new instance of LongPairIdentityTest */
+    public LongPairIdentityTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(LongPairIdentityTest.class);
+    }
+    
+    public void testConstructor() {
+        LongPairIdentity c1 = new LongPairIdentity(Object.class, 1, 2);
+        LongPairIdentity c2 = new LongPairIdentity(Object.class, 1, 2);
+        LongPairIdentity c3 = new LongPairIdentity(Object.class, 2, 1);
+        assertEquals("Equal LongPairIdentity instances compare not equal.", c1, c2);
+        assertEquals("Equal LongPairIdentity instances have different hash codes.", c1.hashCode(), c2.hashCode());
+        assertFalse ("Not equal LongPairIdentity instances compare equal", c1.equals(c3));
+        assertEquals("Wrong first key.", 1L, c1.getFirstKey());
+        assertEquals("Wrong second key.", 2L, c1.getSecondKey());
+    }
+
+    public void testToStringConstructor() {
+        LongPairIdentity c1 = new LongPairIdentity(Object.class, -1, Long.MAX_VALUE);
+        LongPairIdentity c2 = new LongPairIdentity(Object.class, c1.toString());
+        assertEquals ("Equal LongPairIdentity instances compare not equal.", c1, c2);
+        assertEquals ("Wrong String form.", "-1:" + Long.MAX_VALUE, c1.toString());
+    }
+
+    public void testIllegalStringConstructor() {
+        try {
+            new LongPairIdentity(Object.class, "1,2");
+        } catch (IllegalArgumentException iae) {
+            return; // good
+        }
+        fail ("No exception caught for illegal String.");
+    }
+
+    public void testBadConstructorNullStringParam() {
+        try {
+            new LongPairIdentity(Object.class, (String)null);
+        } catch (JDONullIdentityException ex) {
+            return;
+        }
+        fail ("Failed to catch expected exception.");
+    }
+
+    public void testGetKeyAsObject() {
+        LongPairIdentity c1 = new LongPairIdentity(Object.class, 1, 2);
+        assertEquals("keyAsObject doesn't match.", "1:2", c1.getKeyAsObject());
+    }
+
+    public void testSerialized() {
+        LongPairIdentity c1 = new LongPairIdentity(Object.class, 1, 2);
+        LongPairIdentity c2 = new LongPairIdentity(Object.class, 1, 3);
+        Object[] scis = writeReadSerialized(new Object[] {c1, c2});
+        Object sc1 = scis[0];
+        Object sc2 = scis[1];
+        assertEquals ("Equal LongPairIdentity instances compare not equal.", c1, sc1);
+        assertEquals ("Equal LongPairIdentity instances compare not equal.", sc2, c2);
+        assertFalse ("Not equal LongPairIdentity instances compare equal.", sc1.equals(sc2));
+    }
+
+    public void testCompareTo() {
+        LongPairIdentity c1 = new LongPairIdentity(Object.class, 1, 2);
+        LongPairIdentity c2 = new LongPairIdentity(Object.class, 1, 2);
+        LongPairIdentity c3 = new LongPairIdentity(Object.class, 1, 3);
+        LongPairIdentity c4 = new LongPairIdentity(Object.class, 2, Long.MIN_VALUE);
+        LongPairIdentity c5 = new LongPairIdentity(Class.class, 1, 2);
+        assertEquals("Equal LongPairIdentity instances compare not equal.", 0, c1.compareTo(c2));
+        assertTrue("Not equal LongPairIdentity instances have wrong compareTo result", c1.compareTo(c3) < 0);
+        assertTrue("Not equal LongPairIdentity instances have wrong compareTo result", c4.compareTo(c3) > 0);
+        assertTrue("Not equal LongPairIdentity instances have wrong compareTo result", c1.compareTo(c5) > 0);
+    }
+
+    public void testParse() {
+        String s = "(-3:" + Long.MAX_VALUE + ")";
+        LongPairIdentity c1 = LongPairIdentity.parse(Object.class, s, 1, s.length() - 1);
+        assertEquals("Wrong parsed key.", new LongPairIdentity(Object.class, -3, Long.MAX_VALUE), c1);
+        assertEquals("Wrong appended form.", s, 
+            c1.appendTo(new StringBuilder("(")).append(')').toString());
+        try {
+            LongPairIdentity.parse(Object.class, s, 0, 3);
+        } catch (IllegalArgumentException ex) {
+            return; // good
+        }
+        fail ("No exception caught for illegal String.");
+    }
+}
@@ -23,7 +23,9 @@ package javax.jdo.identity;
 
 import java.lang.reflect.InvocationTargetException;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
 
 import java.math.BigDecimal;
 
@@ -33,9 +35,17 @@ import java.security.PrivilegedAction;
 import java.text.SimpleDateFormat;
 import java.text.DateFormat;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
 import java.util.Currency;
 import java.util.Date;
 import java.util.Locale;
+import java.util.UUID;
 
 import javax.jdo.JDOUserException;
 import javax.jdo.JDONullIdentityException;
@@ -208,6 +218,21 @@ public class ObjectIdentityTest extends SingleFieldIdentityTest {
         fail ("Failed to catch expected NoSuchMethodException.");
     }
     
+    public void testBadStringConstructorNoStringConstructorRepeated() {
+        Throwable[] causes = new Throwable[2];
+        for (int i = 0; i < causes.length; ++i) {
+            try {
+                new ObjectIdentity(Object.class, 
+                        "javax.jdo.identity.ObjectIdentityTest$BadIdClassNoStringConstructor:yy");
+                fail ("Failed to catch expected NoSuchMethodException.");
+            } catch (JDOUserException ex) {
+                validateNestedException(ex, NoSuchMethodException.class);
+                causes[i] = ex.getCause();
+            }
+        }
+        assertNotSame("Cached exception was rethrown", causes[0], causes[1]);
+    }
+    
     public void testBadStringConstructorNoPublicStringConstructor() {
         try {
             new ObjectIdentity(Object.class, 
@@ -294,6 +319,90 @@ public class ObjectIdentityTest extends SingleFieldIdentityTest {
         fail ("Failed to catch expected IllegalArgumentException.");
     }
 
+    public void testStringDateTimeFormatterDateConstructor() {
+        helper.registerDateTimeFormatter(DateTimeFormatter
+                .ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC));
+        try {
+            SingleFieldIdentity c1 = new ObjectIdentity(Object.class, 
+                    "java.util.Date:1970-01-01 00:00:01");
+            assertEquals(new Date(1000L), c1.getKeyAsObject());
+        } finally {
+            helper.registerDateFormat(DateFormat.getDateTimeInstance());
+        }
+    }
+
+    public void testBadStringDateTimeFormatterDateConstructor() {
+        helper.registerDateTimeFormatter(DateTimeFormatter.ISO_LOCAL_DATE);
+        try {
+            new ObjectIdentity(Object.class, "java.util.Date:1970-13-01");
+        } catch (JDOUserException ex) {
+            validateNestedException(ex, DateTimeParseException.class);
+            return;
+        } finally {
+            helper.registerDateFormat(DateFormat.getDateTimeInstance());
+        }
+        fail ("Failed to catch expected DateTimeParseException.");
+    }
+
+    public void testNoDateStringDateTimeFormatterDateConstructor() {
+        helper.registerDateTimeFormatter(DateTimeFormatter.ISO_LOCAL_TIME);
+        try {
+            new ObjectIdentity(Object.class, "java.util.Date:10:15:30");
+        } catch (JDOUserException ex) {
+            return;
+        } finally {
+            helper.registerDateFormat(DateFormat.getDateTimeInstance());
+        }
+        fail ("Failed to catch expected JDOUserException.");
+    }
+
+    public void testStringInstantConstructor() {
+        Instant instant = Instant.ofEpochSecond(1234567890L, 123456789L);
+        SingleFieldIdentity c1 = new ObjectIdentity(Object.class, instant);
+        SingleFieldIdentity c2 = new ObjectIdentity(Object.class, c1.toString());
+        assertEquals(instant, c2.getKeyAsObject());
+    }
+
+    public void testStringLocalDateConstructor() {
+        SingleFieldIdentity c1 = new ObjectIdentity(Object.class, 
+                    "java.time.LocalDate:2009-02-13");
+        assertEquals(LocalDate.of(2009, 2, 13), c1.getKeyAsObject());
+    }
+
+    public void testStringLocalDateTimeConstructor() {
+        SingleFieldIdentity c1 = new ObjectIdentity(Object.class, 
+                    "java.time.LocalDateTime:2009-02-13T23:31:30");
+        assertEquals(LocalDateTime.of(2009, 2, 13, 23, 31, 30), 
+                c1.getKeyAsObject());
+    }
+
+    public void testBadStringLocalDateConstructor() {
+        try {
+            new ObjectIdentity(Object.class, "java.time.LocalDate:13/02/2009");
+        } catch (JDOUserException ex) {
+            validateNestedException(ex, DateTimeParseException.class);
+            return;
+        }
+        fail ("Failed to catch expected DateTimeParseException.");
+    }
+
+    public void testStringUUIDConstructor() {
+        UUID uuid = UUID.randomUUID();
+        SingleFieldIdentity c1 = new ObjectIdentity(Object.class, 
+                    "java.util.UUID:" + uuid);
+        assertEquals(uuid, c1.getKeyAsObject());
+    }
+
+    public void testBadStringUUIDConstructor() {
+        try {
+            new ObjectIdentity(Object.class, "java.util.UUID:not-a-uuid");
+        } catch (JDOUserException ex) {
+            validateNestedException(ex, IllegalArgumentException.class);
+            return;
+        }
+        fail ("Failed to catch expected IllegalArgumentException.");
+    }
+
     public void testSerializedIdClass() {
         ObjectIdentity c1 = new ObjectIdentity(Object.class, new IdClass(1));
         ObjectIdentity c2 = new ObjectIdentity(Object.class, new IdClass(1));
@@ -390,6 +499,21 @@ public class ObjectIdentityTest extends SingleFieldIdentityTest {
         assertEquals("keyAsObject doesn't match.", c1.getKeyAsObject(), new IdClass(1));
     }
 
+    public void testAppendTo() throws IOException {
+        ObjectIdentity c1 = new ObjectIdentity(Object.class, new BigDecimal("1.5"));
+        StringWriter out = new StringWriter();
+        c1.appendTo((Appendable)out);
+        assertEquals("Wrong appended form.", c1.toString(), out.toString());
+    }
+
+    public void testParse() {
+        ObjectIdentity c1 = new ObjectIdentity(Object.class, new BigDecimal("1.5"));
+        StringBuilder sb = c1.appendTo(new StringBuilder("id="));
+        assertEquals("Wrong appended form.", "id=" + c1, sb.toString());
+        ObjectIdentity c2 = ObjectIdentity.parse(Object.class, sb, 3, sb.length());
+        assertEquals("Parsed identity compares not equal.", c1, c2);
+    }
+
     private <T> void validateNestedException(JDOUserException ex, Class<T> expected) {
         Throwable[] nesteds = ex.getNestedExceptions();
         if (nesteds == null || nesteds.length != 1) {
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * SingleFieldIdentityMapTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class SingleFieldIdentityMapTest extends SingleFieldIdentityTest {
+    
+    /** Creates a new instance of SingleFieldIdentityMapTest */
+    public SingleFieldIdentityMapTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(SingleFieldIdentityMapTest.class);
+    }
+    
+    public void testPutGet() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        assertNull("Wrong previous value", 
+            map.put(new LongIdentity(Object.class, 1L), "long"));
+        assertNull("Wrong previous value", 
+            map.put(new IntIdentity(Object.class, 1), "int"));
+        assertNull("Wrong previous value", 
+            map.put(new StringIdentity(Object.class, "1"), "string"));
+        assertNull("Wrong previous value", 
+            map.put(new ByteIdentity(Object.class, (byte)1), "byte"));
+        assertNull("Wrong previous value", 
+            map.put(new LongIdentity(String.class, 1L), "other class"));
+        assertEquals("Wrong previous value", "long", 
+            map.put(new LongIdentity(Object.class, 1L), "long2"));
+        assertEquals("Wrong size", 5, map.size());
+        assertEquals("Wrong value", "long2", 
+            map.get(new LongIdentity(Object.class, 1L)));
+        assertEquals("Wrong value", "long2", map.get(Object.class, 1L));
+        assertEquals("Wrong value", "int", map.get(Object.class, 1));
+        assertEquals("Wrong value", "string", map.get(Object.class, "1"));
+        assertEquals("Wrong value", "byte", 
+            map.get(new ByteIdentity(Object.class, (byte)1)));
+        assertEquals("Wrong value", "other class", map.get(String.class, 1L));
+        assertNull("Wrong value", map.get(Object.class, 2L));
+        assertNull("Wrong value", map.get(Integer.class, 1L));
+        assertNull("Wrong value", map.get("not an identity"));
+    }
+
+    public void testPrimitivePut() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        map.put(Object.class, 1L, "long");
+        map.put(Object.class, 1, "int");
+        map.put(Object.class, "1", "string");
+        assertTrue("Key not found", 
+            map.containsKey(new LongIdentity(Object.class, 1L)));
+        assertTrue("Key not found", 
+            map.containsKey(new IntIdentity(Object.class, 1)));
+        assertTrue("Key not found", 
+            map.containsKey(new StringIdentity(Object.class, "1")));
+        assertFalse("Key found", 
+            map.containsKey(new ShortIdentity(Object.class, (short)1)));
+        Map<SingleFieldIdentity, String> expected = 
+            new HashMap<SingleFieldIdentity, String>();
+        expected.put(new LongIdentity(Object.class, 1L), "long");
+        expected.put(new IntIdentity(Object.class, 1), "int");
+        expected.put(new StringIdentity(Object.class, "1"), "string");
+        assertEquals("Map not equal to HashMap", expected, map);
+        assertEquals("HashMap not equal to map", map, expected);
+        assertEquals("Wrong hash code", expected.hashCode(), map.hashCode());
+    }
+
+    public void testIterationCreatesIdentities() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        map.put(Object.class, 7L, "value");
+        SingleFieldIdentity key = map.keySet().iterator().next();
+        assertEquals("Wrong key", new LongIdentity(Object.class, 7L), key);
+        assertEquals("Wrong target class", Object.class, key.getTargetClass());
+        assertEquals("Wrong hash code", 
+            new LongIdentity(Object.class, 7L).hashCode(), key.hashCode());
+    }
+
+    public void testUnknownTargetClass() {
+        LongIdentity serialized = (LongIdentity)writeReadSerialized(
+            new Object[]{new LongIdentity(Object.class, 3L)})[0];
+        assertNull("Target class restored", serialized.getTargetClass());
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        map.put(serialized, "value");
+        assertEquals("Wrong value", "value", map.get(Object.class, 3L));
+        map.put(Object.class, 3L, "value2");
+        assertEquals("Wrong size", 1, map.size());
+        SingleFieldIdentity key = map.keySet().iterator().next();
+        assertEquals("Wrong key", serialized, key);
+        assertEquals("Wrong key", new LongIdentity(Object.class, 3L), key);
+    }
+
+    public void testRemove() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        for (int i = 0; i < 10; ++i) {
+            map.put(Object.class, i, "int" + i);
+            map.put(Object.class, "" + i, "string" + i);
+            map.put(new CharIdentity(Object.class, (char)('0' + i)), "char" + i);
+        }
+        assertEquals("Wrong removed value", "int3", 
+            map.remove(new IntIdentity(Object.class, 3)));
+        assertNull("Wrong removed value", 
+            map.remove(new IntIdentity(Object.class, 3)));
+        assertNull("Wrong removed value", 
+            map.remove(new LongIdentity(Object.class, 4L)));
+        for (Iterator<Map.Entry<SingleFieldIdentity, String>> it = 
+                map.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<SingleFieldIdentity, String> entry = it.next();
+            if (entry.getValue().endsWith("5")) {
+                it.remove();
+            }
+        }
+        assertEquals("Wrong size", 26, map.size());
+        assertFalse("Key found", map.containsKey(Object.class, 5));
+        assertFalse("Key found", map.containsKey(Object.class, "5"));
+        assertFalse("Key found", 
+            map.containsKey(new CharIdentity(Object.class, '5')));
+        assertEquals("Wrong value", "int6", map.get(Object.class, 6));
+        map.clear();
+        assertTrue("Map not empty", map.isEmpty());
+    }
+
+    public void testSetValue() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        map.put(Object.class, "key", "value");
+        Map.Entry<SingleFieldIdentity, String> entry = 
+            map.entrySet().iterator().next();
+        assertEquals("Wrong previous value", "value", entry.setValue("new"));
+        assertEquals("Wrong value", "new", map.get(Object.class, "key"));
+    }
+
+    public void testSetValueAfterRehash() {
+        SingleFieldIdentityMap<Long> map = new SingleFieldIdentityMap<Long>();
+        map.put(Object.class, 1000L, Long.valueOf(1000));
+        Map.Entry<SingleFieldIdentity, Long> entry = 
+            map.entrySet().iterator().next();
+        // grow the table so that the keys move to other slots
+        for (long i = 0; i < 1000; ++i) {
+            map.put(Object.class, i, Long.valueOf(i));
+        }
+        assertEquals("Wrong previous value", Long.valueOf(1000), 
+            entry.setValue(Long.valueOf(-1)));
+        assertEquals("Wrong value", Long.valueOf(-1), 
+            map.get(Object.class, 1000L));
+        for (long i = 0; i < 1000; ++i) {
+            assertEquals("Value of other key overwritten", Long.valueOf(i), 
+                map.get(Object.class, i));
+        }
+    }
+
+    public void testConcurrentModification() {
+        SingleFieldIdentityMap<String> map = 
+            new SingleFieldIdentityMap<String>();
+        map.put(Object.class, 1L, "value");
+        map.put(Object.class, 2L, "value");
+        Iterator<SingleFieldIdentity> it = map.keySet().iterator();
+        it.next();
+        map.put(Object.class, 3L, "value");
+        try {
+            it.next();
+            fail("Modification during iteration not detected");
+        } catch (ConcurrentModificationException ex) {
+            // expected
+        }
+    }
+
+    public void testGrowth() {
+        SingleFieldIdentityMap<Long> map = new SingleFieldIdentityMap<Long>();
+        int count = 10000;
+        for (long i = 0; i < count; ++i) {
+            map.put(Object.class, i * 31, Long.valueOf(i));
+            if (i % 3 == 0) {
+                map.remove(new LongIdentity(Object.class, i * 31));
+            }
+        }
+        assertEquals("Wrong size", count - (count + 2) / 3, map.size());
+        for (long i = 0; i < count; ++i) {
+            Long expected = (i % 3 == 0) ? null : Long.valueOf(i);
+            assertEquals("Wrong value", expected, map.get(Object.class, i * 31));
+        }
+        int iterated = 0;
+        for (SingleFieldIdentity key : map.keySet()) {
+            ++iterated;
+        }
+        assertEquals("Wrong number of keys iterated", map.size(), iterated);
+    }
+}
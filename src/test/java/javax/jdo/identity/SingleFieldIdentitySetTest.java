@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * SingleFieldIdentitySetTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class SingleFieldIdentitySetTest extends SingleFieldIdentityTest {
+    
+    /** Creates a new instance of SingleFieldIdentitySetTest */
+    public SingleFieldIdentitySetTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(SingleFieldIdentitySetTest.class);
+    }
+    
+    public void testAddContains() {
+        SingleFieldIdentitySet set = new SingleFieldIdentitySet();
+        assertTrue("Identity not added", 
+            set.add(new LongIdentity(Object.class, 1L)));
+        assertFalse("Identity added twice", set.add(Object.class, 1L));
+        assertTrue("Identity not added", set.add(Object.class, 1));
+        assertTrue("Identity not added", set.add(Object.class, "1"));
+        assertTrue("Identity not added", set.add(String.class, "1"));
+        assertTrue("Identity not added", 
+            set.add(new ObjectIdentity(Object.class, Integer.valueOf(1))));
+        assertEquals("Wrong size", 5, set.size());
+        assertTrue("Identity not found", set.contains(Object.class, 1L));
+        assertTrue("Identity not found", 
+            set.contains(new IntIdentity(Object.class, 1)));
+        assertTrue("Identity not found", 
+            set.contains(new StringIdentity(String.class, "1")));
+        assertTrue("Identity not found", 
+            set.contains(new ObjectIdentity(Object.class, Integer.valueOf(1))));
+        assertFalse("Identity found", set.contains(Object.class, 2L));
+        assertFalse("Identity found", set.contains(Integer.class, "1"));
+    }
+
+    public void testEqualsHashSet() {
+        SingleFieldIdentitySet set = new SingleFieldIdentitySet();
+        Set<SingleFieldIdentity> expected = new HashSet<SingleFieldIdentity>();
+        for (int i = 0; i < 100; ++i) {
+            set.add(Object.class, (long)i);
+            set.add(Object.class, "s" + i);
+            expected.add(new LongIdentity(Object.class, i));
+            expected.add(new StringIdentity(Object.class, "s" + i));
+        }
+        assertEquals("Set not equal to HashSet", expected, set);
+        assertEquals("HashSet not equal to set", set, expected);
+        assertEquals("Wrong hash code", expected.hashCode(), set.hashCode());
+        assertEquals("Wrong iteration", expected, 
+            new HashSet<SingleFieldIdentity>(set));
+    }
+
+    public void testSerializedElements() {
+        Object[] serialized = writeReadSerialized(new Object[]{
+            new IntIdentity(Object.class, 5), 
+            new StringIdentity(Object.class, "five")});
+        SingleFieldIdentitySet set = new SingleFieldIdentitySet();
+        set.add((SingleFieldIdentity)serialized[0]);
+        set.add((SingleFieldIdentity)serialized[1]);
+        assertTrue("Identity not found", set.contains(Object.class, 5));
+        assertTrue("Identity not found", set.contains(Object.class, "five"));
+        assertFalse("Identity added twice", set.add(Object.class, 5));
+    }
+
+    public void testRemove() {
+        SingleFieldIdentitySet set = new SingleFieldIdentitySet();
+        for (int i = 0; i < 100; ++i) {
+            set.add(Object.class, i);
+        }
+        assertTrue("Identity not removed", 
+            set.remove(new IntIdentity(Object.class, 0)));
+        assertFalse("Identity removed twice", 
+            set.remove(new IntIdentity(Object.class, 0)));
+        for (Iterator<SingleFieldIdentity> it = set.iterator(); it.hasNext(); ) {
+            if (((IntIdentity)it.next()).getKey() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals("Wrong size", 50, set.size());
+        assertTrue("Identity not found", set.contains(Object.class, 99));
+        assertFalse("Identity found", set.contains(Object.class, 98));
+        set.clear();
+        assertTrue("Set not empty", set.isEmpty());
+    }
+}
@@ -98,4 +98,12 @@ public class StringIdentityTest extends SingleFieldIdentityTest {
         assertTrue("Not equal StringIdentity instances have wrong compareTo result", c3.compareTo(c1) > 0); 
         assertTrue("Not equal StringIdentity instances have wrong compareTo result", c1.compareTo(c4) > 0);
     }
+
+    public void testParse() {
+        StringIdentity c1 = StringIdentity.parse(Object.class, 
+            new StringBuilder("[key]"), 1, 4);
+        assertEquals("Wrong parsed key.", "key", c1.getKey());
+        assertEquals("Wrong appended form.", "key", 
+            c1.appendTo(new StringBuilder()).toString());
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+/*
+ * UUIDIdentityTest.java
+ *
+ */
+
+package javax.jdo.identity;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+
+import java.util.UUID;
+
+import javax.jdo.JDONullIdentityException;
+
+import javax.jdo.util.BatchTestRunner;
+
+/**
+ *
+ */
+public class UUIDIdentityTest extends SingleFieldIdentityTest {
+    
+    private static final UUID KEY1 = 
+        UUID.fromString("00000000-0000-0001-0000-000000000002");
+    private static final UUID KEY2 = 
+        UUID.fromString("ffffffff-ffff-ffff-0000-000000000001");
+
+    /** Creates a new instance of UUIDIdentityTest */
+    public UUIDIdentityTest() {
+    }
+    
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchTestRunner.run(UUIDIdentityTest.class);
+    }
+    
+    public void testConstructor() {
+        UUIDIdentity c1 = new UUIDIdentity(Object.class, KEY1);
+        UUIDIdentity c2 = new UUIDIdentity(Object.class, 1L, 2L);
+        UUIDIdentity c3 = new UUIDIdentity(Object.class, KEY2);
+        assertEquals("Equal UUIDIdentity instances compare not equal.", c1, c2);
+        assertEquals("Equal UUIDIdentity instances have different hash codes.", c1.hashCode(), c2.hashCode());
+        assertFalse ("Not equal UUIDIdentity instances compare equal", c1.equals(c3));
+        assertEquals("Wrong most significant bits.", 1L, c1.getMostSignificantBits());
+        assertEquals("Wrong least significant bits.", 2L, c1.getLeastSignificantBits());
+    }
+
+    public void testToStringConstructor() {
+        UUIDIdentity c1 = new UUIDIdentity(Object.class, KEY2);
+        UUIDIdentity c2 = new UUIDIdentity(Object.class, c1.toString());
+        assertEquals ("Equal UUIDIdentity instances compare not equal.", c1, c2);
+        assertEquals ("Wrong String form.", KEY2.toString(), c1.toString());
+    }
+
+    public void testBadConstructorNullUUIDParam() {
+        try {
+            new UUIDIdentity(Object.class, (UUID)null);
+        } catch (JDONullIdentityException ex) {
+            return;
+        }
+        fail ("Failed to catch expected exception.");
+    }
+
+    public void testBadConstructorNullStringParam() {
+        try {
+            new UUIDIdentity(Object.class, (String)null);
+        } catch (JDONullIdentityException ex) {
+            return;
+        }
+        fail ("Failed to catch expected exception.");
+    }
+
+    public void testGetKeyAsObject() {
+        UUIDIdentity c1 = new UUIDIdentity(Object.class, 1L, 2L);
+        assertEquals("keyAsObject doesn't match.", KEY1, c1.getKeyAsObject());
+        assertEquals("key doesn't match.", KEY1, c1.getKey());
+    }
+
+    public void testSerialized() {
+        UUIDIdentity c1 = new UUIDIdentity(Object.class, KEY1);
+        UUIDIdentity c2 = new UUIDIdentity(Object.class, KEY2);
+        Object[] scis = writeReadSerialized(new Object[] {c1, c2});
+        Object sc1 = scis[0];
+        Object sc2 = scis[1];
+        assertEquals ("Equal UUIDIdentity instances compare not equal.", c1, sc1);
+        assertEquals ("Equal UUIDIdentity instances compare not equal.", sc2, c2);
+        assertFalse ("Not equal UUIDIdentity instances compare equal.", sc1.equals(sc2));
+        assertEquals ("keyAsObject doesn't match.", KEY2, ((UUIDIdentity)sc2).getKeyAsObject());
+    }
+
+    public void testCompareTo() {
+        UUIDIdentity c1 = new UUIDIdentity(Object.class, KEY1);
+        UUIDIdentity c2 = new UUIDIdentity(Object.class, KEY1);
+        UUIDIdentity c3 = new UUIDIdentity(Object.class, KEY2);
+        UUIDIdentity c4 = new UUIDIdentity(Class.class, KEY1);
+        assertEquals("Equal UUIDIdentity instances compare not equal.", 0, c1.compareTo(c2));
+        assertEquals("Wrong compareTo result", KEY1.compareTo(KEY2), c1.compareTo(c3));
+        assertEquals("Wrong compareTo result", KEY2.compareTo(KEY1), c3.compareTo(c1));
+        assertTrue("Not equal UUIDIdentity instances have wrong compareTo result", c1.compareTo(c4) > 0);
+    }
+
+    public void testAppendTo() throws IOException {
+        UUID[] keys = {KEY1, KEY2, UUID.randomUUID()};
+        for (UUID key : keys) {
+            UUIDIdentity c1 = new UUIDIdentity(Object.class, key);
+            StringWriter out = new StringWriter();
+            c1.appendTo((Appendable)out);
+            assertEquals("Wrong appended form.", key.toString(), out.toString());
+        }
+    }
+
+    public void testParse() {
+        UUID key = UUID.randomUUID();
+        String s = "<" + key.toString().toUpperCase() + ">";
+        UUIDIdentity c1 = UUIDIdentity.parse(Object.class, s, 1, s.length() - 1);
+        assertEquals("Wrong parsed key.", key, c1.getKey());
+        String[] illegal = {"1-2-3-4-5", KEY1 + "0", KEY1.toString().replace('-', '_'),
+            KEY1.toString().replace('2', 'g')};
+        for (String str : illegal) {
+            try {
+                UUIDIdentity.parse(Object.class, str, 0, str.length());
+                fail ("No exception caught for illegal String " + str);
+            } catch (IllegalArgumentException ex) {
+                // good
+            }
+        }
+    }
+}
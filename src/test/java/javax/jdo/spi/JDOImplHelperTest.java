@@ -17,10 +17,14 @@
 
 package javax.jdo.spi;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import javax.jdo.Constants;
+import javax.jdo.JDOFatalUserException;
 import javax.jdo.JDOUserException;
 import javax.jdo.pc.PCPoint;
 import javax.jdo.util.AbstractTest;
@@ -172,6 +176,168 @@ public class JDOImplHelperTest extends AbstractTest {
                                     fieldFlags, pcSuperclass, new PCPoint());
     }
 
+    /** */
+    public void testClassUnregistration() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        String[] fieldNames = new String[] {"field"};
+        JDOImplHelper.registerClass(JDOImplHelperTest.class, fieldNames, 
+                                    new Class[] {String.class}, new byte[1], 
+                                    null, null);
+        assertEquals("Wrong field names", fieldNames[0], 
+                     implHelper.getFieldNames(JDOImplHelperTest.class)[0]);
+        assertTrue("Missing registration of JDOImplHelperTest", 
+                   implHelper.getRegisteredClasses().contains(
+                       JDOImplHelperTest.class));
+
+        implHelper.unregisterClass(JDOImplHelperTest.class);
+        assertFalse("JDOImplHelperTest still registered", 
+                    implHelper.getRegisteredClasses().contains(
+                        JDOImplHelperTest.class));
+        try {
+            implHelper.getFieldNames(JDOImplHelperTest.class);
+            fail("Missing exception for unregistered class");
+        }
+        catch (JDOFatalUserException ex) {
+            // expected exception => OK
+        }
+    }
+
+    /** */
+    public void testGetFieldNumber() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        JDOImplHelper.registerClass(BaseClass.class, 
+                                    new String[] {"id", "name"}, 
+                                    new Class[] {long.class, String.class}, 
+                                    new byte[2], null, null);
+        JDOImplHelper.registerClass(DerivedClass.class, 
+                                    new String[] {"name", "size"}, 
+                                    new Class[] {String.class, int.class}, 
+                                    new byte[2], BaseClass.class, null);
+        try {
+            assertEquals("Wrong number of BaseClass.id", 
+                         0, implHelper.getFieldNumber(BaseClass.class, "id"));
+            assertEquals("Wrong number of BaseClass.name", 
+                         1, implHelper.getFieldNumber(BaseClass.class, "name"));
+            assertEquals("Wrong number of inherited field id", 
+                         0, implHelper.getFieldNumber(DerivedClass.class, "id"));
+            assertEquals("Wrong number of hiding field name", 
+                         2, implHelper.getFieldNumber(DerivedClass.class, "name"));
+            assertEquals("Wrong number of DerivedClass.size", 
+                         3, implHelper.getFieldNumber(DerivedClass.class, "size"));
+            assertEquals("Wrong number of unknown field", 
+                         -1, implHelper.getFieldNumber(BaseClass.class, "size"));
+        } finally {
+            implHelper.unregisterClass(DerivedClass.class);
+            implHelper.unregisterClass(BaseClass.class);
+        }
+    }
+
+    /** */
+    public void testGetFieldTypeCodes() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        Class[] fieldTypes = new Class[] {boolean.class, char.class, 
+            byte.class, short.class, int.class, long.class, float.class, 
+            double.class, String.class, Integer.class};
+        byte[] expected = new byte[] {JDOImplHelper.FIELD_TYPE_BOOLEAN, 
+            JDOImplHelper.FIELD_TYPE_CHAR, JDOImplHelper.FIELD_TYPE_BYTE, 
+            JDOImplHelper.FIELD_TYPE_SHORT, JDOImplHelper.FIELD_TYPE_INT, 
+            JDOImplHelper.FIELD_TYPE_LONG, JDOImplHelper.FIELD_TYPE_FLOAT, 
+            JDOImplHelper.FIELD_TYPE_DOUBLE, JDOImplHelper.FIELD_TYPE_STRING, 
+            JDOImplHelper.FIELD_TYPE_OBJECT};
+        event = null;
+        RegisterClassListener listener = new SimpleListener();
+        implHelper.addRegisterClassListener(listener);
+        try {
+            JDOImplHelper.registerClass(BaseClass.class, 
+                                        new String[fieldTypes.length], 
+                                        fieldTypes, 
+                                        new byte[fieldTypes.length], 
+                                        null, null);
+            assertTrue("Wrong field type codes", Arrays.equals(expected, 
+                       implHelper.getFieldTypeCodes(BaseClass.class)));
+            assertTrue("Wrong field type codes in event", 
+                       Arrays.equals(expected, event.getFieldTypeCodes()));
+        } finally {
+            implHelper.removeRegisterClassListener(listener);
+            implHelper.unregisterClass(BaseClass.class);
+        }
+    }
+
+    /** */
+    public void testClassesRegistration() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        final List<List<RegisterClassEvent>> batches = 
+            new ArrayList<List<RegisterClassEvent>>();
+        RegisterClassListener listener = new SimpleListener() {
+            public void registerClasses(List<RegisterClassEvent> events) {
+                batches.add(events);
+            }
+        };
+        implHelper.addRegisterClassListener(listener);
+        batches.clear();
+        try {
+            JDOImplHelper.registerClasses(
+                new Class[] {BaseClass.class, DerivedClass.class}, 
+                new String[][] {{"id"}, {"size"}}, 
+                new Class[][] {{long.class}, {int.class}}, 
+                new byte[2][1], new Class[] {null, BaseClass.class}, 
+                new PersistenceCapable[2]);
+            assertEquals("Wrong number of batches", 1, batches.size());
+            List<RegisterClassEvent> events = batches.get(0);
+            assertEquals("Wrong number of events", 2, events.size());
+            assertEquals("Wrong first class", 
+                         BaseClass.class, events.get(0).getRegisteredClass());
+            assertEquals("Wrong second class", 
+                         DerivedClass.class, events.get(1).getRegisteredClass());
+            assertEquals("Wrong number of DerivedClass.size", 
+                         1, implHelper.getFieldNumber(DerivedClass.class, "size"));
+        } finally {
+            implHelper.removeRegisterClassListener(listener);
+            implHelper.unregisterClass(DerivedClass.class);
+            implHelper.unregisterClass(BaseClass.class);
+        }
+
+        try {
+            JDOImplHelper.registerClasses(new Class[1], new String[0][], 
+                new Class[0][], new byte[0][], new Class[0], 
+                new PersistenceCapable[0]);
+            fail("Missing exception for arrays of different length");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected exception => OK
+        }
+    }
+
+    /** */
+    public void testConstructAfterRegisterStringConstructor() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        Object key = JDOImplHelper.construct("java.lang.StringBuffer", "abc");
+        assertEquals("Wrong key constructed with String constructor", 
+                     "abc", key.toString());
+        Object previous = implHelper.registerStringConstructor(
+            StringBuffer.class, new JDOImplHelper.StringConstructor() {
+                public Object construct(String s) {
+                    return new StringBuffer(s).reverse();
+                }
+            });
+        try {
+            key = JDOImplHelper.construct("java.lang.StringBuffer", "abc");
+            assertEquals("Wrong key constructed with StringConstructor", 
+                         "cba", key.toString());
+        } finally {
+            implHelper.registerStringConstructor(StringBuffer.class, 
+                (JDOImplHelper.StringConstructor)previous);
+        }
+        key = JDOImplHelper.construct("java.lang.StringBuffer", "abc");
+        assertEquals("Wrong key constructed after restoring", 
+                     "abc", key.toString());
+    }
+
     /** */
     public void testClassListenerRegistration() {
         JDOImplHelper implHelper = JDOImplHelper.getInstance();
@@ -196,6 +362,31 @@ public class JDOImplHelperTest extends AbstractTest {
         }
     }
 
+    /** */
+    public void testClassListenerRegisteredTwice() {
+        JDOImplHelper implHelper = JDOImplHelper.getInstance();
+
+        // removing a listener added twice leaves one registration
+        RegisterClassListener listener = new SimpleListener();
+        implHelper.addRegisterClassListener(listener);
+        implHelper.addRegisterClassListener(listener);
+        implHelper.removeRegisterClassListener(listener);
+        event = null;
+        JDOImplHelper.registerClass(JDOImplHelperTest.class, new String[0], 
+                                    new Class[0], new byte[0], null, null);
+        if (event == null) {
+            fail("Missing event "); 
+        }
+
+        event = null;
+        implHelper.removeRegisterClassListener(listener);
+        JDOImplHelper.registerClass(JDOImplHelperTest.class, new String[0], 
+                                    new Class[0], new byte[0], null, null);
+        if (event != null) {
+            fail("Unexpected event " + event);
+        }
+    }
+
     /**
      * Test that an unknown standard property causes JDOUserException.
      */
@@ -285,6 +476,12 @@ public class JDOImplHelperTest extends AbstractTest {
         JDOImplHelper.assertOnlyKnownStandardProperties(p);
     }
 
+    /** */
+    static class BaseClass {}
+
+    /** */
+    static class DerivedClass extends BaseClass {}
+
     /** */
     class SimpleListener implements RegisterClassListener {
 
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo.spi;
+
+import java.io.InputStream;
+import java.net.URL;
+
+import javax.jdo.Constants;
+import javax.jdo.JDOFatalUserException;
+import javax.jdo.util.AbstractTest;
+import javax.jdo.util.BatchTestRunner;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Tests class javax.jdo.spi.JDOSchemaHelper.
+ */
+public class JDOSchemaHelperTest extends AbstractTest {
+
+    /** */
+    public static void main(String args[]) {
+        BatchTestRunner.run(JDOSchemaHelperTest.class);
+    }
+
+    /** */
+    public void testGetSchemaIsShared() {
+        Schema schema = JDOSchemaHelper.getSchema("orm", "3.2");
+        assertNotNull(schema);
+        assertSame(schema, JDOSchemaHelper.getSchema("javax/jdo/orm_3_2.xsd"));
+        assertSame(JDOSchemaHelper.getSchema(Constants.JDOCONFIG_XSD_RESOURCE),
+            JDOSchemaHelper.getSchema("jdoconfig", "3.0"));
+    }
+
+    /** */
+    public void testGetSchemaNotBundled() {
+        try {
+            JDOSchemaHelper.getSchema("orm", "9.9");
+            fail("Expected JDOFatalUserException for unknown schema");
+        } catch (JDOFatalUserException ex) {
+            // expected
+        }
+        try {
+            JDOSchemaHelper.getSchema(Constants.ORM_DTD_RESOURCE);
+            fail("Expected JDOFatalUserException for a DTD");
+        } catch (JDOFatalUserException ex) {
+            // expected
+        }
+    }
+
+    /** */
+    public void testValidateWithSharedSchema() throws Exception {
+        Schema schema = JDOSchemaHelper.getSchema("orm", "2.2");
+        schema.newValidator().validate(
+            new StreamSource(getResource("Positive0-xsd.orm").toString()));
+        try {
+            schema.newValidator().validate(
+                new StreamSource(getResource("Negative0-xsd.orm").toString()));
+            fail("Expected invalid document to be rejected");
+        } catch (SAXException ex) {
+            // expected
+        }
+    }
+
+    /** */
+    public void testEntityResolver() throws Exception {
+        InputSource source = JDOSchemaHelper.getEntityResolver().resolveEntity(
+            "-//The Apache Software Foundation//DTD Java Data Objects Metadata 3.2//EN",
+            "https://db.apache.org/jdo/xmlns/jdo_3_2.dtd");
+        assertNotNull("Bundled DTD not resolved by public id", source);
+        source.getByteStream().close();
+
+        assertNotNull("Bundled DTD not resolved by system id",
+            JDOSchemaHelper.getResourceName(null,
+                "http://xmlns.jcp.org/dtd/orm_3_0.dtd"));
+        assertNotNull("Bundled XSD not resolved by system id",
+            JDOSchemaHelper.getResourceName(null,
+                "http://xmlns.jcp.org/xml/ns/jdo/jdoconfig_3_0.xsd"));
+        assertNull("Unknown entity resolved",
+            JDOSchemaHelper.getEntityResolver().resolveEntity(
+                null, "http://example.com/other.dtd"));
+        assertNull("Unbundled file resolved",
+            JDOSchemaHelper.getResourceName(null,
+                "http://xmlns.jcp.org/dtd/orm_9_9.dtd"));
+    }
+
+    /** */
+    public void testValidateWithDTDFromMemory() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        builder.setEntityResolver(JDOSchemaHelper.getEntityResolver());
+        builder.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException ex) {
+            }
+            public void error(SAXParseException ex) throws SAXException {
+                throw ex;
+            }
+            public void fatalError(SAXParseException ex) throws SAXException {
+                throw ex;
+            }
+        });
+        InputStream in = getResource("Positive0-dtd.orm").openStream();
+        try {
+            builder.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** */
+    private URL getResource(String name) {
+        URL url = getClass().getClassLoader().getResource(name);
+        assertNotNull("Missing test resource " + name, url);
+        return url;
+    }
+}
@@ -21,6 +21,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 
 import javax.jdo.JDOHelper;
+import javax.jdo.ObjectState;
 import javax.jdo.PersistenceManager;
 
 import javax.jdo.util.AbstractTest;
@@ -95,6 +96,20 @@ public class StateInterrogationTest extends AbstractTest {
                 1, id1.hashCode());
     }
 
+    public void testGetObjectIdSameClassDifferentStateInterrogations() {
+        addStateInterrogations();
+        // all instances share a class but are handled by different
+        // StateInterrogations, so the remembered one must not be final
+        for (int i = 0; i < 3; ++i) {
+            for (int id = 0; id < nbcpcs.length; ++id) {
+                Object oid = JDOHelper.getObjectId(nbcpcs[id]);
+                assertNotNull("ObjectId should not be null", oid);
+                assertEquals("ObjectId should be " + id,
+                        id, oid.hashCode());
+            }
+        }
+    }
+
     public void testGetTransactionalObjectIdNull() {
         Object id2 = JDOHelper.getTransactionalObjectId(nbcpc2);
         assertNull("TransactionalObjectId should be null before addStateInterrogations",
@@ -303,6 +318,31 @@ public class StateInterrogationTest extends AbstractTest {
         		JDOHelper.isDirty(nbcpc1));
     }
 
+    public void testGetStateFlagsMine() {
+        assertEquals("StateFlags should be 0 before addStateInterrogations",
+                0, JDOHelper.getStateFlags(nbcpc1));
+        addStateInterrogations();
+        int expected = PersistenceCapable.STATE_PERSISTENT
+            | PersistenceCapable.STATE_TRANSACTIONAL
+            | PersistenceCapable.STATE_NEW
+            | PersistenceCapable.STATE_DELETED
+            | PersistenceCapable.STATE_DETACHED;
+        assertEquals("StateFlags should be all but dirty for nbcpc1",
+                expected, JDOHelper.getStateFlags(nbcpc1));
+        nbcpc1.setDirty(true);
+        assertEquals("StateFlags should include dirty after setDirty(true)",
+                expected | PersistenceCapable.STATE_DIRTY,
+                JDOHelper.getStateFlags(nbcpc1));
+        assertEquals("ObjectState should be detached dirty for nbcpc1",
+                ObjectState.DETACHED_DIRTY,
+                JDOHelper.getObjectState(nbcpc1));
+        assertEquals("StateFlags should be 0 for nbcpc2",
+                0, JDOHelper.getStateFlags(nbcpc2));
+        assertEquals("ObjectState should be transient for nbcpc2",
+                ObjectState.TRANSIENT,
+                JDOHelper.getObjectState(nbcpc2));
+    }
+
     public void tearDown() {
         removeStateInterrogations();
     }
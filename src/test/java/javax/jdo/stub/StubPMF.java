@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.jdo.Constants;
 import javax.jdo.FetchGroup;
@@ -56,6 +57,7 @@ public class StubPMF implements PersistenceManagerFactory, Constants {
         return pmf;
     }
 
+    @SuppressWarnings("unchecked")
     public static PersistenceManagerFactory getPersistenceManagerFactory(
         Map overrides, Map props) {
 
@@ -64,6 +66,10 @@ public class StubPMF implements PersistenceManagerFactory, Constants {
         pmf.setProperties(props);
         pmf.setProperties(overrides);
 
+        Object onCreate = overrides.get(PROPERTY_ON_CREATE);
+        if (onCreate instanceof Consumer) {
+            ((Consumer<PersistenceManagerFactory>) onCreate).accept(pmf);
+        }
         return pmf;
     }
 
@@ -304,12 +310,24 @@ public class StubPMF implements PersistenceManagerFactory, Constants {
         this.optionDatastoreWriteTimeoutMillis = datastoreWriteTimeoutMillis;
     }
 
+    /** Property holding a Consumer that is given the created factory. */
+    public static final String PROPERTY_ON_CREATE = "StubPMF.OnCreate";
+
+    /** Property holding a Runnable that is run when the factory is closed. */
+    public static final String PROPERTY_ON_CLOSE = "StubPMF.OnClose";
+
+    private volatile boolean closed;
+
     public void close() {
-        throw new UnsupportedOperationException("not implemented");
+        closed = true;
+        Object onClose = properties.get(PROPERTY_ON_CLOSE);
+        if (onClose instanceof Runnable) {
+            ((Runnable) onClose).run();
+        }
     }
 
     public boolean isClosed() {
-        return true;
+        return closed;
     }
 
     public PersistenceManager getPersistenceManager() {
@@ -544,6 +562,10 @@ public class StubPMF implements PersistenceManagerFactory, Constants {
             setSpiResourceName(val);
             return;
         }
+        if (name.equals(PROPERTY_ON_CREATE) || name.equals(PROPERTY_ON_CLOSE)) {
+            // run by getPersistenceManagerFactory and close
+            return;
+        }
 
         throw new IllegalArgumentException("unhandled stub PMF property "
             + name);
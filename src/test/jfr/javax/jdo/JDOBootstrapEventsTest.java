@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package javax.jdo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jdo.util.BatchTestRunner;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import junit.framework.TestSuite;
+
+/**
+ * Tests the JDK Flight Recorder events emitted by JDOHelper while
+ * creating a PersistenceManagerFactory.
+ */
+public class JDOBootstrapEventsTest extends AbstractJDOConfigTest {
+
+    public static void main(String args[]) {
+        BatchTestRunner.run(JDOBootstrapEventsTest.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    public static TestSuite suite() {
+        return new TestSuite(JDOBootstrapEventsTest.class);
+    }
+
+    public void testPhasesRecorded() throws IOException {
+        URLClassLoader loader = new JDOConfigTestClassLoader(
+            getClass().getClassLoader(),
+            JDOCONFIG_CLASSPATH_PREFIX + "/Pmfmapmap01/");
+        File dump = File.createTempFile("jdobootstrap", ".jfr");
+        dump.deleteOnExit();
+
+        Recording recording = new Recording();
+        try {
+            recording.enable("javax.jdo.Bootstrap").withoutThreshold();
+            recording.start();
+            JDOHelper.getPersistenceManagerFactory("BookSearch", loader);
+            recording.stop();
+            recording.dump(dump.toPath());
+        } finally {
+            recording.close();
+        }
+
+        Set<String> phases = new HashSet<String>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            if (!"javax.jdo.Bootstrap".equals(event.getEventType().getName())) {
+                continue;
+            }
+            phases.add(event.getString("phase"));
+            assertEquals("BookSearch", event.getString("factoryName"));
+            assertNotNull(event.getString("classLoader"));
+        }
+        assertTrue("Missing phases: " + phases, phases.contains(
+            JDOBootstrapEvents.PHASE_RESOURCE_ENUMERATION));
+        assertTrue("Missing phases: " + phases, phases.contains(
+            JDOBootstrapEvents.PHASE_PROPERTY_VALIDATION));
+        assertTrue("Missing phases: " + phases, phases.contains(
+            JDOBootstrapEvents.PHASE_CLASS_LOADING));
+        assertTrue("Missing phases: " + phases, phases.contains(
+            JDOBootstrapEvents.PHASE_FACTORY_METHOD));
+    }
+
+    public void testNoEventStartedWhenNotRecording() {
+        assertNull(JDOBootstrapEvents.begin());
+    }
+}